@@ -0,0 +1,37 @@
+package com.petvetai.app.config;
+
+import com.petvetai.app.service.AddressMatchingService;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * 地址索引健康检查
+ * 贡献者名称为 addressIndex，加入就绪探针组后，索引首次加载完成前实例不接收流量。
+ * 加载失败同样返回 OUT_OF_SERVICE 而不是 DOWN：失败后服务会定时重试加载，
+ * 整体健康状态（以及引用它的存活探针）不应因此判定进程失活而重启实例
+ *
+ * @author PetVetAI
+ */
+@Component
+public class AddressIndexHealthIndicator implements HealthIndicator {
+    
+    private final AddressMatchingService addressMatchingService;
+    
+    public AddressIndexHealthIndicator(AddressMatchingService addressMatchingService) {
+        this.addressMatchingService = addressMatchingService;
+    }
+    
+    @Override
+    public Health health() {
+        if (addressMatchingService.isReady()) {
+            return Health.up().build();
+        }
+        Throwable failure = addressMatchingService.getInitialLoadFailure();
+        if (failure != null) {
+            return Health.outOfService().withException(failure)
+                    .withDetail("status", "address index load failed").build();
+        }
+        return Health.outOfService().withDetail("status", "address index warming").build();
+    }
+}
@@ -0,0 +1,62 @@
+package com.petvetai.app.domain.address;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 行政区划增量变更
+ * 撤并、更名等调整按编码表示为新增、删除或修改，编码变化可拆成删除旧编码和新增新编码
+ * 
+ * @author PetVetAI
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DivisionChange {
+    
+    /**
+     * 变更类型
+     */
+    public enum Type {
+        /**
+         * 新增（编码已存在时按修改处理）
+         */
+        ADD,
+        /**
+         * 删除
+         */
+        REMOVE,
+        /**
+         * 修改（如街道更名）
+         */
+        UPDATE
+    }
+    
+    /**
+     * 变更类型
+     */
+    private Type type;
+    
+    /**
+     * 行政区划编码
+     */
+    private String code;
+    
+    /**
+     * 变更后的行政区划，删除时为 null
+     */
+    private AdministrativeDivision division;
+    
+    public static DivisionChange add(AdministrativeDivision division) {
+        return new DivisionChange(Type.ADD, division.getCode(), division);
+    }
+    
+    public static DivisionChange remove(String code) {
+        return new DivisionChange(Type.REMOVE, code, null);
+    }
+    
+    public static DivisionChange update(AdministrativeDivision division) {
+        return new DivisionChange(Type.UPDATE, division.getCode(), division);
+    }
+}
@@ -0,0 +1,59 @@
+package com.petvetai.app.domain.address;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 户级地址数据模型
+ * 街道/乡镇以下的道路、门牌号、楼栋、单元和室，所属街道以行政区划编码表示
+ * 
+ * @author PetVetAI
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HouseholdAddress {
+    
+    /**
+     * 户编码
+     */
+    private String code;
+    
+    /**
+     * 所属街道/乡镇的行政区划编码
+     */
+    private String divisionCode;
+    
+    /**
+     * 道路（如"文一西路"）
+     */
+    private String road;
+    
+    /**
+     * 门牌号
+     */
+    private String number;
+    
+    /**
+     * 楼栋
+     */
+    private String building;
+    
+    /**
+     * 单元
+     */
+    private String unit;
+    
+    /**
+     * 室
+     */
+    private String room;
+    
+    /**
+     * 获取户级层级数组 [道路, 门牌号, 楼栋, 单元, 室]
+     */
+    public String[] getTokens() {
+        return new String[]{road, number, building, unit, room};
+    }
+}
@@ -0,0 +1,26 @@
+package com.petvetai.app.domain.address;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 户级地址匹配结果
+ * 
+ * @author PetVetAI
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class HouseholdMatchResult {
+    
+    /**
+     * 行政区划匹配结果
+     */
+    private MatchResult division;
+    
+    /**
+     * 匹配的户，街道未确定或街道下没有唯一对应的户时为 null
+     */
+    private HouseholdAddress household;
+}
@@ -1,21 +1,66 @@
 package com.petvetai.app.service;
 
 import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.DivisionChange;
+import com.petvetai.app.domain.address.HouseholdAddress;
+import com.petvetai.app.domain.address.HouseholdMatchResult;
 import com.petvetai.app.domain.address.MatchResult;
 import com.petvetai.app.util.address.AddressIndex;
+import com.petvetai.app.util.address.AddressIndexSnapshot;
 import com.petvetai.app.util.address.AddressMatcher;
+import com.petvetai.app.util.address.DivisionCsvReader;
+import com.petvetai.app.util.address.HouseholdCsvReader;
+import com.petvetai.app.util.address.HouseholdIndex;
+import com.petvetai.app.util.address.MatchResultCache;
+import com.petvetai.app.util.address.PartitionedAddressIndex;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
-import java.io.BufferedReader;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * 地址匹配服务
+ * 索引在后台线程中加载，不阻塞 Spring 上下文启动；首个索引发布之前匹配请求立即返回"预热中"的结果，
+ * 就绪状态通过 {@link #isReady()} 和健康检查 addressIndex 对外暴露。
+ * 配置了户级地址数据时，行政区划索引首次发布后再加载户级索引，{@link #matchHousehold} 在匹配到街道后下降到户；
+ * 户级数据文件变更只重建户级索引，行政区划数据变更也不重建户级索引
  * 
  * @author PetVetAI
  */
@@ -23,41 +68,222 @@ import java.util.List;
 @Service
 public class AddressMatchingService {
     
-    private final AddressIndex index;
-    private final AddressMatcher matcher;
+    /**
+     * 批量匹配时单个任务处理的地址数，低于该数量不再拆分
+     */
+    private static final int BATCH_SPLIT_THRESHOLD = 256;
+    
+    /**
+     * 流式批量匹配每次从上游读取并并行处理的地址数
+     */
+    private static final int STREAM_CHUNK_SIZE = 8192;
+    
+    private static final long DEFAULT_CACHE_MAX_ENTRIES = 100_000;
+    private static final long DEFAULT_CACHE_MAX_BYTES = 64L * 1024 * 1024;
+    private static final long DEFAULT_MAX_RESIDENT_DIVISIONS = 1_000_000;
+    
+    /**
+     * 文件变更后延迟重建的时间，合并短时间内的多次写入事件
+     */
+    private static final long RELOAD_DELAY_MILLIS = 500;
+    
+    /**
+     * 首次加载失败后重试的间隔
+     */
+    private static final long INITIAL_LOAD_RETRY_SECONDS = 30;
+    
+    private static final String CLASSPATH_CSV = "data/administrative_divisions.csv";
+    
+    /**
+     * 索引尚未就绪时匹配结果的异常原因
+     */
+    public static final String INDEX_WARMING = "地址索引预热中";
+    
+    private final MatchResultCache cache;
+    
+    /**
+     * 当前发布的匹配器，每个匹配器绑定一个不可变的索引快照；重新加载时整体原子替换，读请求从不阻塞。
+     * 首次加载完成前和使用分区索引时为空
+     */
+    private final AtomicReference<AddressMatcher> matcherRef;
+    
+    /**
+     * 当前发布的按省分区索引，未配置分区目录或分区加载失败时为 null
+     */
+    private volatile PartitionedAddressIndex partitionedIndex;
+    
+    /**
+     * 按省分区的索引目录，未配置时为 null
+     */
+    private final Path partitionDir;
+    
+    /**
+     * 分区索引常驻分区的行政区划总数上限
+     */
+    private final long maxResidentDivisions;
+    
+    /**
+     * 索引快照文件，未配置时为 null
+     */
+    private final Path snapshotPath;
+    
+    /**
+     * 外部CSV文件，未配置时使用类路径下的数据文件
+     */
+    private final Path csvPath;
+    
+    /**
+     * 户级地址CSV文件，未配置时不加载户级索引
+     */
+    private final Path householdCsvPath;
+    
+    /**
+     * 当前发布的户级索引，未配置或尚未加载时为 null
+     */
+    private volatile HouseholdIndex householdIndex;
+    
+    /**
+     * 后台重建索引的单线程执行器
+     */
+    private final ScheduledExecutorService reloadExecutor = Executors.newSingleThreadScheduledExecutor(
+            runnable -> daemonThread(runnable, "address-index-reload"));
+    
+    /**
+     * 已安排但尚未开始的重建，避免重复排队
+     */
+    private final AtomicBoolean reloadPending = new AtomicBoolean();
+    
+    /**
+     * 已安排但尚未开始的户级索引重建
+     */
+    private final AtomicBoolean householdReloadPending = new AtomicBoolean();
+    
+    /**
+     * 首个索引发布后打开
+     */
+    private final CountDownLatch firstPublished = new CountDownLatch(1);
+    
+    /**
+     * 首个索引发布前最近一次加载失败的原因，发布后为 null
+     */
+    private volatile Throwable initialLoadFailure;
+    
+    private final AtomicLong indexGeneration = new AtomicLong();
+    private final Timer buildTimer = Timer.builder("address.index.build")
+            .description("地址索引构建/加载耗时")
+            .register(Metrics.globalRegistry);
+    
+    private WatchService watchService;
+    
+    /**
+     * 批量匹配线程池，大小与 CPU 核数一致；工作线程常驻，匹配器按线程缓存的扫描缓冲区得以复用
+     */
+    private final ForkJoinPool batchPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
     
     public AddressMatchingService() {
-        this.index = new AddressIndex();
-        this.matcher = new AddressMatcher(index);
-        loadDataFromCsv();
+        this(DEFAULT_CACHE_MAX_ENTRIES, DEFAULT_CACHE_MAX_BYTES, "", "", "", DEFAULT_MAX_RESIDENT_DIVISIONS, "", false);
     }
     
     /**
-     * 从CSV文件加载数据
+     * @param cacheMaxEntries 匹配结果缓存最大条目数
+     * @param cacheMaxBytes   匹配结果缓存最大估算字节数
+     * @param snapshotPath    索引快照文件路径，为空或文件不存在时从CSV构建索引
+     * @param csvPath         外部行政区划CSV文件路径，为空时使用类路径下的数据文件
+     * @param partitionDir    按省分区的索引目录（见 {@link PartitionedAddressIndex}），配置后优先于快照和CSV
+     * @param maxResidentDivisions 分区索引常驻分区的行政区划总数上限，超过时淘汰最久未使用的分区
+     * @param householdCsvPath 户级地址CSV文件路径（见 {@link HouseholdCsvReader}），为空时不加载户级索引
+     * @param watch           是否监听快照、分区路由表、外部CSV和户级CSV文件的变更并自动重建索引
      */
-    private void loadDataFromCsv() {
-        List<AdministrativeDivision> divisions = new ArrayList<>();
-        
-        try (InputStream is = getClass().getClassLoader().getResourceAsStream("data/administrative_divisions.csv");
-             BufferedReader reader = new BufferedReader(
-                     new InputStreamReader(is, StandardCharsets.UTF_8))) {
-            
-            String line;
-            while ((line = reader.readLine()) != null) {
-                line = line.trim();
-                if (line.isEmpty() || line.startsWith("#")) {
-                    continue; // 跳过空行和注释
-                }
-                
-                AdministrativeDivision division = parseCsvLine(line);
-                if (division != null) {
-                    divisions.add(division);
+    @Autowired
+    public AddressMatchingService(@Value("${address.match-cache.max-entries:100000}") long cacheMaxEntries,
+                                  @Value("${address.match-cache.max-bytes:67108864}") long cacheMaxBytes,
+                                  @Value("${address.index.snapshot-path:}") String snapshotPath,
+                                  @Value("${address.index.csv-path:}") String csvPath,
+                                  @Value("${address.index.partition-dir:}") String partitionDir,
+                                  @Value("${address.index.partition.max-resident-divisions:1000000}")
+                                  long maxResidentDivisions,
+                                  @Value("${address.household.csv-path:}") String householdCsvPath,
+                                  @Value("${address.index.watch:true}") boolean watch) {
+        this.snapshotPath = toPath(snapshotPath);
+        this.csvPath = toPath(csvPath);
+        this.partitionDir = toPath(partitionDir);
+        this.householdCsvPath = toPath(householdCsvPath);
+        this.maxResidentDivisions = maxResidentDivisions;
+        this.cache = new MatchResultCache(cacheMaxEntries, cacheMaxBytes);
+        this.matcherRef = new AtomicReference<>();
+        Gauge.builder("address.index.generation", indexGeneration, AtomicLong::get)
+                .description("当前地址索引代数")
+                .register(Metrics.globalRegistry);
+        Gauge.builder("address.index.partition.resident", this,
+                        service -> service.partitionedIndex != null
+                                ? service.partitionedIndex.getResidentPartitionCount() : 0)
+                .description("常驻内存的地址索引分区数")
+                .register(Metrics.globalRegistry);
+        if (watch) {
+            startWatcher();
+        }
+        // 索引在后台加载，构造器立即返回
+        reloadExecutor.execute(this::doReload);
+    }
+    
+    /**
+     * 打开按省分区的索引目录，只读取路由表；未配置或打开失败时返回 null，改为加载完整索引
+     */
+    private PartitionedAddressIndex openPartitions() {
+        if (partitionDir == null) {
+            return null;
+        }
+        long start = System.nanoTime();
+        try {
+            PartitionedAddressIndex index = PartitionedAddressIndex.open(partitionDir, maxResidentDivisions, cache);
+            long elapsed = System.nanoTime() - start;
+            buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            log.info("地址索引分区路由表已加载：{} 个分区，耗时 {} ms", index.getPartitionCount(), elapsed / 1_000_000);
+            return index;
+        } catch (IOException e) {
+            log.warn("加载地址索引分区 {} 失败，改为加载完整索引", partitionDir, e);
+            return null;
+        }
+    }
+    
+    /**
+     * 加载索引并记录构建耗时：优先映射快照文件，快照不可用时从CSV构建
+     */
+    private AddressIndex loadIndex() {
+        long start = System.nanoTime();
+        AddressIndex index = null;
+        if (snapshotPath != null) {
+            if (Files.isRegularFile(snapshotPath)) {
+                try {
+                    index = AddressIndexSnapshot.read(snapshotPath);
+                } catch (IOException e) {
+                    log.warn("加载索引快照 {} 失败，改为从CSV构建", snapshotPath, e);
                 }
+            } else {
+                log.warn("索引快照 {} 不存在，改为从CSV构建", snapshotPath);
             }
-            
+        }
+        if (index == null) {
+            index = loadDataFromCsv();
+        }
+        long elapsed = System.nanoTime() - start;
+        buildTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        indexGeneration.set(index.getGeneration());
+        log.info("地址索引已加载：{} 条行政区划，代数 {}，耗时 {} ms", index.size(), index.getGeneration(),
+                elapsed / 1_000_000);
+        return index;
+    }
+    
+    /**
+     * 从CSV文件加载数据
+     */
+    private AddressIndex loadDataFromCsv() {
+        try (InputStream is = csvPath != null
+                ? Files.newInputStream(csvPath)
+                : getClass().getClassLoader().getResourceAsStream(CLASSPATH_CSV)) {
+            List<AdministrativeDivision> divisions = DivisionCsvReader.read(is);
             log.info("成功加载 {} 条行政区划数据", divisions.size());
-            index.buildIndex(divisions);
-            
+            return AddressIndex.build(divisions);
         } catch (Exception e) {
             log.error("加载CSV数据失败", e);
             throw new RuntimeException("加载行政区划数据失败", e);
@@ -65,23 +291,209 @@ public class AddressMatchingService {
     }
     
     /**
-     * 解析CSV行
-     * 格式：编码,省,市,区,街道
+     * 请求在后台重新加载索引
+     * 新索引完整构建后才原子替换，构建期间请求继续使用旧索引；构建失败时保留旧索引
      */
-    private AdministrativeDivision parseCsvLine(String line) {
-        String[] parts = line.split(",");
-        if (parts.length < 5) {
-            log.warn("CSV行格式不正确: {}", line);
-            return null;
+    public void reloadIndex() {
+        if (reloadPending.compareAndSet(false, true)) {
+            reloadExecutor.schedule(this::doReload, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    private void doReload() {
+        reloadPending.set(false);
+        try {
+            PartitionedAddressIndex partitions = openPartitions();
+            if (partitions != null) {
+                // 重新打开路由表，已加载的分区随旧实例一起释放，新实例的分区按需重新加载
+                partitionedIndex = partitions;
+                matcherRef.set(null);
+                indexGeneration.set(partitions.getGeneration());
+                log.info("地址索引分区已替换，代数 {}", partitions.getGeneration());
+            } else {
+                AddressMatcher previous = matcherRef.getAndSet(new AddressMatcher(loadIndex(), cache));
+                partitionedIndex = null;
+                log.info("地址索引已替换，代数 {} -> {}", previous != null ? previous.getIndex().getGeneration() : 0,
+                        indexGeneration.get());
+            }
+            initialLoadFailure = null;
+            firstPublished.countDown();
+            // 户级索引有自己的重建入口，这里只在尚未加载时（首次发布或之前加载失败）加载
+            if (householdIndex == null) {
+                reloadHouseholds();
+            }
+        } catch (RuntimeException e) {
+            if (isReady()) {
+                log.error("重新加载地址索引失败，继续使用旧索引", e);
+            } else {
+                // 首次加载失败不影响应用其余部分，保持未就绪并定时重试
+                initialLoadFailure = e;
+                log.error("加载地址索引失败，{} 秒后重试", INITIAL_LOAD_RETRY_SECONDS, e);
+                reloadExecutor.schedule(this::reloadIndex, INITIAL_LOAD_RETRY_SECONDS, TimeUnit.SECONDS);
+            }
         }
-        
-        return new AdministrativeDivision(
-                parts[0].trim(),
-                parts[1].trim(),
-                parts[2].trim(),
-                parts[3].trim(),
-                parts[4].trim()
-        );
+    }
+    
+    /**
+     * 请求在后台重新加载户级索引，不重建行政区划索引
+     */
+    public void reloadHouseholdIndex() {
+        if (householdReloadPending.compareAndSet(false, true)) {
+            reloadExecutor.schedule(() -> {
+                householdReloadPending.set(false);
+                reloadHouseholds();
+            }, RELOAD_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+        }
+    }
+    
+    /**
+     * 加载户级索引后原子替换，加载失败时保留旧索引；户级索引不影响行政区划匹配的就绪状态
+     */
+    private void reloadHouseholds() {
+        if (householdCsvPath == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try (InputStream is = Files.newInputStream(householdCsvPath)) {
+            HouseholdIndex index = HouseholdIndex.build(HouseholdCsvReader.read(is));
+            householdIndex = index;
+            log.info("户级地址索引已加载：{} 个街道 {} 户，耗时 {} ms", index.streetCount(), index.size(),
+                    (System.nanoTime() - start) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.error("加载户级地址数据 {} 失败，继续使用旧索引", householdCsvPath, e);
+        }
+    }
+    
+    /**
+     * 是否已发布过索引；未就绪时匹配请求返回 {@link #INDEX_WARMING} 结果
+     */
+    public boolean isReady() {
+        return firstPublished.getCount() == 0;
+    }
+    
+    /**
+     * 等待首个索引发布
+     *
+     * @return 超时前是否已就绪
+     */
+    public boolean awaitReady(long timeout, TimeUnit unit) throws InterruptedException {
+        return firstPublished.await(timeout, unit);
+    }
+    
+    /**
+     * 首个索引发布前最近一次加载失败的原因，正在加载或已就绪时为 null
+     */
+    public Throwable getInitialLoadFailure() {
+        return initialLoadFailure;
+    }
+    
+    /**
+     * Nacos 推送 address.index.* 配置变更时重新加载索引（例如修改 address.index.version 触发重建）
+     */
+    @EventListener
+    public void onEnvironmentChange(EnvironmentChangeEvent event) {
+        if (event.getKeys().stream().anyMatch(key -> key.startsWith("address.index."))) {
+            log.info("地址索引配置变更 {}，重新加载索引", event.getKeys());
+            reloadIndex();
+        }
+    }
+    
+    /**
+     * 应用行政区划增量变更（撤并、更名等）
+     * 在当前索引基础上生成新版本后原子替换，不重新加载数据文件；数据文件之后整体重新加载时以文件内容为准
+     *
+     * @throws IllegalStateException 索引尚未就绪
+     */
+    public void applyDelta(List<DivisionChange> changes) {
+        if (!isReady()) {
+            throw new IllegalStateException(INDEX_WARMING);
+        }
+        PartitionedAddressIndex partitions = partitionedIndex;
+        if (partitions != null) {
+            partitions.applyDelta(changes);
+            indexGeneration.set(partitions.getGeneration());
+            log.info("地址索引分区已应用 {} 条增量变更，代数 {}", changes.size(), partitions.getGeneration());
+            return;
+        }
+        AddressMatcher updated = matcherRef.updateAndGet(
+                matcher -> new AddressMatcher(matcher.getIndex().applyDelta(changes), cache));
+        indexGeneration.set(updated.getIndex().getGeneration());
+        log.info("地址索引已应用 {} 条增量变更，代数 {}", changes.size(), updated.getIndex().getGeneration());
+    }
+    
+    /**
+     * 监听快照文件、外部CSV文件和户级CSV文件所在目录，目标文件创建或修改后重新加载对应的索引
+     */
+    private void startWatcher() {
+        List<Path> watched = new ArrayList<>();
+        if (snapshotPath != null) {
+            watched.add(snapshotPath.toAbsolutePath());
+        }
+        if (csvPath != null) {
+            watched.add(csvPath.toAbsolutePath());
+        }
+        if (partitionDir != null) {
+            watched.add(partitionDir.resolve(PartitionedAddressIndex.ROUTER_FILE).toAbsolutePath());
+        }
+        if (householdCsvPath != null) {
+            watched.add(householdCsvPath.toAbsolutePath());
+        }
+        if (watched.isEmpty()) {
+            return;
+        }
+        try {
+            watchService = FileSystems.getDefault().newWatchService();
+            for (Path file : watched) {
+                file.getParent().register(watchService,
+                        StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            }
+        } catch (IOException e) {
+            log.warn("无法监听地址数据文件 {}，索引不会自动重新加载", watched, e);
+            return;
+        }
+        daemonThread(() -> watchLoop(watched), "address-index-watcher").start();
+    }
+    
+    private void watchLoop(List<Path> watched) {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Path dir = (Path) key.watchable();
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (!(event.context() instanceof Path)) {
+                        continue;
+                    }
+                    Path file = dir.resolve((Path) event.context());
+                    if (householdCsvPath != null && file.equals(householdCsvPath.toAbsolutePath())) {
+                        log.info("户级地址数据文件 {} 已变更，重新加载户级索引", file);
+                        reloadHouseholdIndex();
+                    } else if (watched.contains(file)) {
+                        log.info("地址数据文件 {} 已变更，重新加载索引", file);
+                        reloadIndex();
+                    }
+                }
+                key.reset();
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 服务关闭
+        }
+    }
+    
+    private static Thread daemonThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+    
+    private static Path toPath(String path) {
+        return path == null || path.isBlank() ? null : Paths.get(path);
+    }
+    
+    /**
+     * 当前索引代数；使用分区索引时为分区索引整体的代数（见 {@link PartitionedAddressIndex#getGeneration()}）
+     */
+    public long getIndexGeneration() {
+        return indexGeneration.get();
     }
     
     /**
@@ -91,7 +503,169 @@ public class AddressMatchingService {
      * @return 匹配结果
      */
     public MatchResult matchAddress(String address) {
-        return matcher.match(address);
+        return currentMatcher().apply(address);
+    }
+    
+    /**
+     * 匹配到户
+     * 先匹配行政区划，确定到街道后再在该街道的户级索引中查找道路、门牌号、楼栋、单元和室；
+     * 未配置户级数据、街道未确定或没有唯一对应的户时户为 null
+     *
+     * @param address 用户输入的地址
+     * @return 匹配结果，空地址返回 null
+     */
+    public HouseholdMatchResult matchHousehold(String address) {
+        MatchResult division = matchAddress(address);
+        if (division == null) {
+            return null;
+        }
+        HouseholdIndex households = householdIndex;
+        HouseholdAddress household = households != null ? households.match(division, address) : null;
+        return new HouseholdMatchResult(division, household);
+    }
+    
+    /**
+     * 当前发布的匹配函数：分区索引或完整索引的匹配器，未就绪时返回预热中的结果
+     */
+    private Function<String, MatchResult> currentMatcher() {
+        PartitionedAddressIndex partitions = partitionedIndex;
+        if (partitions != null) {
+            return partitions::match;
+        }
+        AddressMatcher matcher = matcherRef.get();
+        return matcher != null ? matcher::match : AddressMatchingService::warming;
+    }
+    
+    /**
+     * 索引未就绪时的快速结果：编码为 null、标记异常，调用方可据此返回 503；空地址与正常匹配一样返回 null
+     */
+    private static MatchResult warming(String address) {
+        if (address == null || address.trim().isEmpty()) {
+            return null;
+        }
+        return new MatchResult(null, null, 0.0, true, INDEX_WARMING);
+    }
+    
+    /**
+     * 匹配结果缓存（命中、未命中、淘汰计数）
+     */
+    public MatchResultCache getMatchResultCache() {
+        return cache;
+    }
+    
+    /**
+     * 批量匹配地址
+     * 在批量线程池中并行匹配，结果顺序与输入一致；某一行匹配失败不会中断整批，
+     * 该行返回编码为 null 的异常结果，空地址与 {@link #matchAddress} 一样返回 null
+     *
+     * @param addresses 用户输入的地址列表
+     * @return 与输入一一对应的匹配结果
+     */
+    public List<MatchResult> matchAddresses(List<String> addresses) {
+        String[] input = addresses.toArray(new String[0]);
+        MatchResult[] results = new MatchResult[input.length];
+        if (input.length > 0) {
+            // 整批使用同一个索引快照
+            batchPool.invoke(new BatchMatchTask(currentMatcher(), input, results, 0, input.length));
+        }
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * 流式批量匹配地址
+     * 按块从上游读取地址，每块在批量线程池中并行匹配后按输入顺序输出，
+     * 适合逐行读取的大文件，内存中只保留当前块
+     *
+     * @param addresses 用户输入的地址流
+     * @return 与输入一一对应的匹配结果流
+     */
+    public Stream<MatchResult> matchAddresses(Stream<String> addresses) {
+        Iterator<String> source = addresses.iterator();
+        Spliterator<MatchResult> chunks = new Spliterators.AbstractSpliterator<>(
+                Long.MAX_VALUE, Spliterator.ORDERED) {
+            
+            private final List<String> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            private List<MatchResult> pending = List.of();
+            private int position;
+            
+            @Override
+            public boolean tryAdvance(Consumer<? super MatchResult> action) {
+                if (position == pending.size()) {
+                    chunk.clear();
+                    while (chunk.size() < STREAM_CHUNK_SIZE && source.hasNext()) {
+                        chunk.add(source.next());
+                    }
+                    if (chunk.isEmpty()) {
+                        return false;
+                    }
+                    pending = matchAddresses(chunk);
+                    position = 0;
+                }
+                action.accept(pending.get(position++));
+                return true;
+            }
+        };
+        return StreamSupport.stream(chunks, false).onClose(addresses::close);
+    }
+    
+    /**
+     * 匹配单个地址，异常时记录日志并返回编码为 null 的异常结果
+     */
+    private static MatchResult matchSafely(Function<String, MatchResult> matcher, String address) {
+        try {
+            return matcher.apply(address);
+        } catch (RuntimeException e) {
+            log.warn("地址匹配失败: {}", address, e);
+            return new MatchResult(null, null, 0.0, true, "地址解析失败");
+        }
+    }
+    
+    @PreDestroy
+    public void destroy() {
+        batchPool.shutdown();
+        reloadExecutor.shutdownNow();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                log.warn("关闭地址数据文件监听失败", e);
+            }
+        }
+    }
+    
+    /**
+     * 批量匹配任务：按区间二分拆分，结果直接写入对应下标
+     */
+    private static class BatchMatchTask extends RecursiveAction {
+        
+        private static final long serialVersionUID = 1L;
+        
+        private final Function<String, MatchResult> matcher;
+        private final String[] addresses;
+        private final MatchResult[] results;
+        private final int from;
+        private final int to;
+        
+        BatchMatchTask(Function<String, MatchResult> matcher, String[] addresses, MatchResult[] results, int from, int to) {
+            this.matcher = matcher;
+            this.addresses = addresses;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+        
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SPLIT_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = matchSafely(matcher, addresses[i]);
+                }
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new BatchMatchTask(matcher, addresses, results, from, mid),
+                    new BatchMatchTask(matcher, addresses, results, mid, to));
+        }
     }
 }
 
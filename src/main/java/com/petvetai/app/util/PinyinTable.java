@@ -0,0 +1,156 @@
+package com.petvetai.app.util;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 汉字拼音查找表
+ * 启动时基于 pinyin4j 一次性构建 CJK 统一汉字区（U+4E00 ~ U+9FFF）的稠密只读表，
+ * 读音（不带声调）去重后驻留在音节池中，每个汉字只保存音节编号，查询时不产生任何对象分配
+ *
+ * @author PetVetAI
+ */
+public final class PinyinTable {
+    
+    /**
+     * 表覆盖的起始字符
+     */
+    public static final char FIRST = '\u4E00';
+    
+    /**
+     * 表覆盖的结束字符（包含）
+     */
+    public static final char LAST = '\u9FFF';
+    
+    /**
+     * 音节池：音节编号 -> 拼音（已 intern）
+     */
+    private static final String[] SYLLABLES;
+    
+    /**
+     * 每个汉字在 READINGS 中的起始位置，长度为字符数 + 1
+     */
+    private static final int[] OFFSETS;
+    
+    /**
+     * 所有汉字的读音音节编号，按汉字顺序连续存放，多音字保持 pinyin4j 的读音顺序
+     */
+    private static final short[] READINGS;
+    
+    static {
+        HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+        format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        format.setVCharType(HanyuPinyinVCharType.WITH_V);
+        
+        int size = LAST - FIRST + 1;
+        int[] offsets = new int[size + 1];
+        short[] readings = new short[size * 2];
+        List<String> syllables = new ArrayList<>();
+        Map<String, Short> syllableIds = new HashMap<>();
+        
+        int cursor = 0;
+        for (int i = 0; i < size; i++) {
+            offsets[i] = cursor;
+            String[] pinyins = lookup((char) (FIRST + i), format);
+            if (pinyins == null) {
+                continue;
+            }
+            int start = cursor;
+            for (String pinyin : pinyins) {
+                Short id = syllableIds.get(pinyin);
+                if (id == null) {
+                    id = (short) syllables.size();
+                    syllables.add(pinyin.intern());
+                    syllableIds.put(pinyin, id);
+                }
+                if (!contains(readings, start, cursor, id)) {
+                    if (cursor == readings.length) {
+                        readings = Arrays.copyOf(readings, readings.length * 2);
+                    }
+                    readings[cursor++] = id;
+                }
+            }
+        }
+        offsets[size] = cursor;
+        
+        SYLLABLES = syllables.toArray(new String[0]);
+        OFFSETS = offsets;
+        READINGS = Arrays.copyOf(readings, cursor);
+    }
+    
+    private PinyinTable() {
+    }
+    
+    /**
+     * 字符是否在表覆盖范围内
+     */
+    public static boolean covers(char c) {
+        return c >= FIRST && c <= LAST;
+    }
+    
+    /**
+     * 获取汉字的读音数量，不在表中或没有读音时返回 0
+     */
+    public static int readingCount(char c) {
+        if (!covers(c)) {
+            return 0;
+        }
+        int i = c - FIRST;
+        return OFFSETS[i + 1] - OFFSETS[i];
+    }
+    
+    /**
+     * 获取汉字第 n 个读音的音节编号
+     */
+    public static int readingId(char c, int n) {
+        return READINGS[OFFSETS[c - FIRST] + n];
+    }
+    
+    /**
+     * 获取汉字第 n 个读音
+     */
+    public static String reading(char c, int n) {
+        return SYLLABLES[READINGS[OFFSETS[c - FIRST] + n]];
+    }
+    
+    /**
+     * 根据音节编号获取拼音
+     */
+    public static String syllable(int id) {
+        return SYLLABLES[id];
+    }
+    
+    /**
+     * 音节池大小
+     */
+    public static int syllableCount() {
+        return SYLLABLES.length;
+    }
+    
+    private static String[] lookup(char c, HanyuPinyinOutputFormat format) {
+        try {
+            return PinyinHelper.toHanyuPinyinStringArray(c, format);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+    
+    private static boolean contains(short[] values, int from, int to, short value) {
+        for (int i = from; i < to; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
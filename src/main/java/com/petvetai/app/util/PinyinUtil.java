@@ -6,19 +6,33 @@ import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
 import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
 import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
  * 拼音工具类
  * 用于处理同音字匹配
- * 
+ * 同音判断在逐字读音网格上进行，不展开多音字的全部拼音组合；组合只在构建同音字索引时生成
+ * CJK 统一汉字区内的字符直接查 {@link PinyinTable}，其余字符才回退到 pinyin4j
+ *
  * @author PetVetAI
  */
 public class PinyinUtil {
     
     private static final HanyuPinyinOutputFormat format;
     
+    private static final String[] NO_PINYIN = new String[0];
+    
+    /**
+     * 最长音节（如 zhuang）的字母数
+     */
+    private static final int MAX_SYLLABLE_LENGTH = 6;
+    
     static {
         format = new HanyuPinyinOutputFormat();
         format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
@@ -31,15 +45,12 @@ public class PinyinUtil {
      */
     public static Set<String> getPinyinSet(char c) {
         Set<String> pinyinSet = new HashSet<>();
-        try {
-            String[] pinyins = PinyinHelper.toHanyuPinyinStringArray(c, format);
-            if (pinyins != null) {
-                for (String pinyin : pinyins) {
-                    pinyinSet.add(pinyin);
-                }
-            }
-        } catch (Exception e) {
-            // 非汉字字符，返回空集合
+        int count = PinyinTable.readingCount(c);
+        for (int i = 0; i < count; i++) {
+            pinyinSet.add(PinyinTable.reading(c, i));
+        }
+        if (count == 0) {
+            Collections.addAll(pinyinSet, getFallbackPinyins(c));
         }
         return pinyinSet;
     }
@@ -49,27 +60,21 @@ public class PinyinUtil {
      * 例如："与杭" -> ["yuhang", "yuxing"]
      */
     public static Set<String> getAllPinyinCombinations(String text) {
+        return getAllPinyinCombinations(text, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * 获取字符串的所有拼音组合，只保留长度不超过 maxLength 的组合
+     * 拼接过程中一旦超长立即剪枝，用于在索引中查找时避免长文本的组合爆炸
+     */
+    public static Set<String> getAllPinyinCombinations(String text, int maxLength) {
         Set<String> result = new HashSet<>();
         if (text == null || text.isEmpty()) {
             return result;
         }
         
-        char[] chars = text.toCharArray();
-        @SuppressWarnings("unchecked")
-        Set<String>[] pinyinSets = new Set[chars.length];
-        
-        // 为每个字符获取所有可能的拼音
-        for (int i = 0; i < chars.length; i++) {
-            pinyinSets[i] = getPinyinSet(chars[i]);
-            if (pinyinSets[i].isEmpty()) {
-                // 非汉字字符，直接使用原字符
-                pinyinSets[i] = new HashSet<>();
-                pinyinSets[i].add(String.valueOf(chars[i]));
-            }
-        }
-        
         // 生成所有组合
-        generateCombinations(pinyinSets, 0, "", result);
+        generateCombinations(text, 0, new StringBuilder(text.length() * 4), maxLength, result);
         
         return result;
     }
@@ -77,15 +82,160 @@ public class PinyinUtil {
     /**
      * 递归生成所有拼音组合
      */
-    private static void generateCombinations(Set<String>[] pinyinSets, int index, 
-                                            String current, Set<String> result) {
-        if (index >= pinyinSets.length) {
-            result.add(current);
+    private static void generateCombinations(String text, int index, StringBuilder current,
+                                             int maxLength, Set<String> result) {
+        if (current.length() > maxLength) {
+            return;
+        }
+        if (index >= text.length()) {
+            result.add(current.toString());
             return;
         }
         
-        for (String pinyin : pinyinSets[index]) {
-            generateCombinations(pinyinSets, index + 1, current + pinyin, result);
+        int length = current.length();
+        char c = text.charAt(index);
+        int count = PinyinTable.readingCount(c);
+        for (int i = 0; i < count; i++) {
+            current.append(PinyinTable.reading(c, i));
+            generateCombinations(text, index + 1, current, maxLength, result);
+            current.setLength(length);
+        }
+        if (count > 0) {
+            return;
+        }
+        
+        String[] pinyins = getFallbackPinyins(c);
+        if (pinyins.length == 0) {
+            // 非汉字字符，直接使用原字符
+            current.append(c);
+            generateCombinations(text, index + 1, current, maxLength, result);
+            current.setLength(length);
+            return;
+        }
+        for (String pinyin : pinyins) {
+            current.append(pinyin);
+            generateCombinations(text, index + 1, current, maxLength, result);
+            current.setLength(length);
+        }
+    }
+    
+    /**
+     * 获取字符串全部读音组合的模糊拼音，只保留长度不超过 maxLength 的组合
+     * 每个音节先按 {@link #toFuzzySyllable} 归一化再拼接，例如"南京" -> ["lanjin"]
+     */
+    public static Set<String> getFuzzyPinyinCombinations(String text, int maxLength) {
+        Set<String> result = new HashSet<>();
+        if (text == null || text.isEmpty()) {
+            return result;
+        }
+        String[][] readings = getReadings(text);
+        for (int i = 0; i < readings.length; i++) {
+            Set<String> fuzzy = new LinkedHashSet<>();
+            for (String reading : readings[i]) {
+                fuzzy.add(toFuzzySyllable(reading));
+            }
+            readings[i] = fuzzy.toArray(new String[0]);
+        }
+        generateCombinations(readings, 0, new StringBuilder(text.length() * 4), maxLength, result);
+        return result;
+    }
+    
+    /**
+     * 获取字符串全部读音组合的首字母缩写，例如"杭州市" -> ["hzs"]
+     */
+    public static Set<String> getInitialsCombinations(String text) {
+        Set<String> result = new HashSet<>();
+        if (text == null || text.isEmpty()) {
+            return result;
+        }
+        String[][] readings = getReadings(text);
+        for (int i = 0; i < readings.length; i++) {
+            Set<String> initials = new LinkedHashSet<>();
+            for (String reading : readings[i]) {
+                initials.add(reading.substring(0, 1));
+            }
+            readings[i] = initials.toArray(new String[0]);
+        }
+        generateCombinations(readings, 0, new StringBuilder(text.length()), Integer.MAX_VALUE, result);
+        return result;
+    }
+    
+    /**
+     * 模糊音归一化：声母 zh/ch/sh -> z/c/s、n -> l，韵母 ing/eng -> in/en，
+     * 覆盖输入法和方言中最常见的混淆，归一化后相同的音节视为同音
+     */
+    public static String toFuzzySyllable(String syllable) {
+        String result = syllable;
+        if (result.length() > 2 && result.charAt(1) == 'h'
+                && (result.charAt(0) == 'z' || result.charAt(0) == 'c' || result.charAt(0) == 's')) {
+            result = result.charAt(0) + result.substring(2);
+        } else if (result.length() > 1 && result.charAt(0) == 'n') {
+            result = 'l' + result.substring(1);
+        }
+        if (result.endsWith("ing") || result.endsWith("eng")) {
+            result = result.substring(0, result.length() - 1);
+        }
+        return result;
+    }
+    
+    /**
+     * 把用户直接输入的拼音串（如"hangzou"、"lanjing"）切分成音节后归一化为模糊拼音，
+     * 优先取最长音节，无法切分成合法音节时返回 null
+     */
+    public static String toFuzzyPinyin(String typed) {
+        String text = typed.toLowerCase();
+        List<String> syllables = new ArrayList<>();
+        if (!segment(text, 0, syllables, new boolean[text.length()])) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(text.length());
+        for (String syllable : syllables) {
+            sb.append(toFuzzySyllable(syllable));
+        }
+        return sb.toString();
+    }
+    
+    /**
+     * @param dead 已确认无法从该位置切分到结尾的位置，避免回溯时重复尝试
+     */
+    private static boolean segment(String text, int start, List<String> syllables, boolean[] dead) {
+        if (start == text.length()) {
+            return true;
+        }
+        if (dead[start]) {
+            return false;
+        }
+        for (int end = Math.min(text.length(), start + MAX_SYLLABLE_LENGTH); end > start; end--) {
+            String syllable = text.substring(start, end);
+            if (SyllableSet.SYLLABLES.contains(syllable)) {
+                syllables.add(syllable);
+                if (segment(text, end, syllables, dead)) {
+                    return true;
+                }
+                syllables.remove(syllables.size() - 1);
+            }
+        }
+        dead[start] = true;
+        return false;
+    }
+    
+    /**
+     * 按读音网格逐位生成组合
+     */
+    private static void generateCombinations(String[][] readings, int index, StringBuilder current,
+                                             int maxLength, Set<String> result) {
+        if (current.length() > maxLength) {
+            return;
+        }
+        if (index >= readings.length) {
+            result.add(current.toString());
+            return;
+        }
+        int length = current.length();
+        for (String reading : readings[index]) {
+            current.append(reading);
+            generateCombinations(readings, index + 1, current, maxLength, result);
+            current.setLength(length);
         }
     }
     
@@ -97,11 +247,16 @@ public class PinyinUtil {
             return "";
         }
         
-        StringBuilder sb = new StringBuilder();
-        for (char c : text.toCharArray()) {
-            Set<String> pinyins = getPinyinSet(c);
-            if (!pinyins.isEmpty()) {
-                sb.append(pinyins.iterator().next());
+        StringBuilder sb = new StringBuilder(text.length() * 4);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (PinyinTable.readingCount(c) > 0) {
+                sb.append(PinyinTable.reading(c, 0));
+                continue;
+            }
+            String[] pinyins = getFallbackPinyins(c);
+            if (pinyins.length > 0) {
+                sb.append(pinyins[0]);
             } else {
                 sb.append(c);
             }
@@ -111,18 +266,179 @@ public class PinyinUtil {
     
     /**
      * 判断两个字符串是否同音（拼音相同）
+     * 与两个字符串的全部拼音组合有交集等价，但在读音网格上判断，不展开组合，见 {@link #isHomophone(String[][], String[][])}
      */
     public static boolean isHomophone(String str1, String str2) {
-        if (str1 == null || str2 == null) {
+        if (str1 == null || str2 == null || str1.isEmpty() || str2.isEmpty()) {
+            return false;
+        }
+        return isHomophone(getReadings(str1), getReadings(str2));
+    }
+    
+    /**
+     * 获取字符串的读音网格：第 i 行为第 i 个字的全部读音，非汉字字符的读音为字符本身
+     */
+    public static String[][] getReadings(String text) {
+        String[][] readings = new String[text.length()][];
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int count = PinyinTable.readingCount(c);
+            if (count > 0) {
+                readings[i] = new String[count];
+                for (int n = 0; n < count; n++) {
+                    readings[i][n] = PinyinTable.reading(c, n);
+                }
+                continue;
+            }
+            String[] pinyins = getFallbackPinyins(c);
+            readings[i] = pinyins.length > 0 ? pinyins : new String[]{String.valueOf(c)};
+        }
+        return readings;
+    }
+    
+    /**
+     * 两个读音网格是否存在拼接后相同的读音序列（即拼音组合有交集）
+     * 字数相同时先逐字比较读音集合，绝大多数同音情况在这里确定；否则按音节网格动态规划：
+     * 把 readings2 看作逐字母转移的自动机，状态为"第 j 个字之前的边界"或"第 j 个字的第 k 个读音已读入 o 个字母"，
+     * 依次读入 readings1 每个字的每个读音，只记录可到达的状态集合。
+     * 复杂度为 O(字数 × 读音数 × 音节长度 × 状态数)，不随多音字个数指数增长
+     */
+    public static boolean isHomophone(String[][] readings1, String[][] readings2) {
+        if (readings1.length == 0 || readings2.length == 0) {
+            return false;
+        }
+        if (readings1.length == readings2.length && shareReadingAtEveryPosition(readings1, readings2)) {
+            return true;
+        }
+        // 拼接结果的首字母和末字母必须相同，不满足时无需动态规划
+        if (!shareLetter(readings1[0], readings2[0], true)
+                || !shareLetter(readings1[readings1.length - 1], readings2[readings2.length - 1], false)) {
             return false;
         }
         
-        Set<String> pinyin1 = getAllPinyinCombinations(str1);
-        Set<String> pinyin2 = getAllPinyinCombinations(str2);
+        // 状态编号：0..n 为字边界，之后为各读音内部的位置（已读入 1..长度-1 个字母）
+        int n = readings2.length;
+        int stateCount = n + 1;
+        for (String[] position : readings2) {
+            for (String reading : position) {
+                stateCount += reading.length() - 1;
+            }
+        }
+        int[] stateChar = new int[stateCount];
+        int[] stateReading = new int[stateCount];
+        int[] stateOffset = new int[stateCount];
+        int[][] firstInner = new int[n][];
+        int next = n + 1;
+        for (int j = 0; j < n; j++) {
+            firstInner[j] = new int[readings2[j].length];
+            for (int k = 0; k < readings2[j].length; k++) {
+                firstInner[j][k] = next;
+                for (int o = 1; o < readings2[j][k].length(); o++, next++) {
+                    stateChar[next] = j;
+                    stateReading[next] = k;
+                    stateOffset[next] = o;
+                }
+            }
+        }
         
-        // 如果两个集合有交集，则认为同音
-        pinyin1.retainAll(pinyin2);
-        return !pinyin1.isEmpty();
+        BitSet current = new BitSet(stateCount);
+        current.set(0);
+        for (String[] position : readings1) {
+            BitSet reached = new BitSet(stateCount);
+            for (String reading : position) {
+                BitSet states = current;
+                for (int p = 0; p < reading.length() && !states.isEmpty(); p++) {
+                    char letter = reading.charAt(p);
+                    BitSet moved = new BitSet(stateCount);
+                    for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) {
+                        if (s < n) {
+                            // 字边界：进入第 s 个字首字母相同的读音
+                            for (int k = 0; k < readings2[s].length; k++) {
+                                String target = readings2[s][k];
+                                if (target.charAt(0) == letter) {
+                                    moved.set(target.length() == 1 ? s + 1 : firstInner[s][k]);
+                                }
+                            }
+                        } else if (s > n) {
+                            // 读音内部：下一个字母相同则前进，读完整个读音后到达下一个字边界
+                            String target = readings2[stateChar[s]][stateReading[s]];
+                            int offset = stateOffset[s];
+                            if (target.charAt(offset) == letter) {
+                                moved.set(offset + 1 == target.length() ? stateChar[s] + 1 : s + 1);
+                            }
+                        }
+                    }
+                    states = moved;
+                }
+                reached.or(states);
+            }
+            if (reached.isEmpty()) {
+                return false;
+            }
+            current = reached;
+        }
+        return current.get(n);
+    }
+    
+    private static boolean shareReadingAtEveryPosition(String[][] readings1, String[][] readings2) {
+        for (int i = 0; i < readings1.length; i++) {
+            if (!shareReading(readings1[i], readings2[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static boolean shareLetter(String[] readings1, String[] readings2, boolean first) {
+        for (String reading1 : readings1) {
+            char letter1 = first ? reading1.charAt(0) : reading1.charAt(reading1.length() - 1);
+            for (String reading2 : readings2) {
+                if (letter1 == (first ? reading2.charAt(0) : reading2.charAt(reading2.length() - 1))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    private static boolean shareReading(String[] readings1, String[] readings2) {
+        for (String reading1 : readings1) {
+            for (String reading2 : readings2) {
+                if (reading1.equals(reading2)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * 查找表之外的字符（如扩展区汉字、〇）回退到 pinyin4j，ASCII 和表内无读音的字符直接返回空
+     */
+    private static String[] getFallbackPinyins(char c) {
+        if (c < 0x80 || PinyinTable.covers(c)) {
+            return NO_PINYIN;
+        }
+        try {
+            String[] pinyins = PinyinHelper.toHanyuPinyinStringArray(c, format);
+            return pinyins != null ? pinyins : NO_PINYIN;
+        } catch (Exception e) {
+            // 非汉字字符，返回空数组
+            return NO_PINYIN;
+        }
+    }
+    
+    /**
+     * 合法音节集合，首次切分拼音串时才初始化
+     */
+    private static final class SyllableSet {
+        
+        static final Set<String> SYLLABLES = new HashSet<>();
+        
+        static {
+            for (int id = 0; id < PinyinTable.syllableCount(); id++) {
+                SYLLABLES.add(PinyinTable.syllable(id));
+            }
+        }
     }
 }
-
@@ -1,206 +1,946 @@
 package com.petvetai.app.util.address;
 
 import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.DivisionChange;
 import com.petvetai.app.util.PinyinUtil;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.PeekableIntIterator;
+import org.roaringbitmap.buffer.BufferFastAggregation;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BinaryOperator;
 
 /**
  * 地址索引结构
  * 实现倒排索引和前缀树，用于快速匹配地址
- * 
+ * 行政区划在构建时分配从 0 开始的连续序号，精确和前缀匹配的记录存放在前缀树的序号数组中，
+ * 拼音、同音字和字符二元组倒排记录以序号的压缩位图（Roaring）存储，候选合并直接做位图并集，
+ * 只有最终结果才需要把序号还原成编码。
+ * 行政区划本身存放在堆外的 {@link DivisionTable} 中，按需解码；省 -> 市 -> 区的层级树 {@link DivisionHierarchy}
+ * 由行政区划表生成，用于把候选限定在输入已确定的省、市范围内。
+ * 构建完成后所有查询都只读（打分特征的惰性生成除外，见 {@link #getFeatures}），可在多个线程间共享。
+ * 索引也可以从 {@link AddressIndexSnapshot} 生成的二进制快照加载，免去启动时的拼音转换和构建。
+ * 行政区划的少量调整通过 {@link #applyDelta} 生成新版本：原索引作为基础段原样共享，
+ * 变更的行政区划单独建成一个增量段（序号接在基础段之后），基础段中被删除或替换的序号记入墓碑位图
+ *
  * @author PetVetAI
  */
 public class AddressIndex {
     
     /**
-     * 倒排索引：关键词 -> 行政区划编码列表
+     * 全局代数计数器，每次构建索引都会分配一个更大的代数
      */
-    private final Map<String, Set<String>> invertedIndex = new HashMap<>();
+    private static final AtomicLong GENERATIONS = new AtomicLong();
     
     /**
-     * 前缀树：用于前缀匹配
+     * 增量段超过该数量（且超过基础段的 1/4）时合并重建，避免查询要合并的段过大
      */
-    private final TrieNode trieRoot = new TrieNode();
+    private static final int MIN_COMPACTION_SIZE = 1024;
     
     /**
-     * 所有行政区划数据：编码 -> 行政区划对象
+     * 并行构建时每个分片处理的输入行数，低于该数量不再拆分
      */
-    private final Map<String, AdministrativeDivision> divisionMap = new HashMap<>();
+    private static final int BUILD_SHARD_ROWS = 4096;
     
     /**
-     * 拼音索引：拼音 -> 原始关键词列表
+     * 并行生成拼音键时每个分片处理的层级名称数（多音字组合展开较慢，分片更小）
      */
-    private final Map<String, Set<String>> pinyinIndex = new HashMap<>();
+    private static final int PINYIN_SHARD_NAMES = 256;
+    
+    /**
+     * 打分特征缓存的最大槽位数：常用的行政区划反复参与打分，全量缓存在百万级数据上会占用数百 MB
+     */
+    private static final int MAX_CACHED_FEATURES = 1 << 16;
+    
+    /**
+     * 索引代数，每个索引实例唯一且随构建顺序递增
+     */
+    private final long generation;
+    
+    /**
+     * 前缀树：关键词（层级名称和完整地址） -> 行政区划序号，精确匹配和前缀匹配共用
+     */
+    private final CompactTrie trie;
+    
+    /**
+     * 所有行政区划数据：序号 -> 行政区划，编码 -> 序号，序号按加载顺序从 0 连续分配
+     */
+    private final DivisionTable divisions;
+    
+    /**
+     * 层级树：省 -> 市 -> 区，节点记录子树内的行政区划序号
+     */
+    private final DivisionHierarchy hierarchy;
+    
+    /**
+     * 打分特征缓存：按序号直接映射（序号 & (长度 - 1)）的槽位，首次用到时由行政区划和层级读音生成，
+     * 槽位冲突时新记录覆盖旧记录；长度不超过 {@link #MAX_CACHED_FEATURES}，不随行政区划数量无限增长
+     */
+    private final DivisionFeatures[] features;
+    
+    /**
+     * 名称编号 -> 读音网格，首次用到时生成，同名层级的打分特征共享
+     */
+    private final AtomicReferenceArray<String[][]> nameReadings;
+    
+    /**
+     * 层级名称 -> 全部拼音组合，同名层级共享同一个数组
+     */
+    private final Map<String, String[]> levelPinyinKeys;
+    
+    /**
+     * 模糊拼音索引：层级名称（及去掉层级后缀的简称）每种读音组合的模糊拼音（见 {@link PinyinUtil#toFuzzySyllable}）
+     * -> 行政区划序号位图
+     */
+    private final Map<String, ImmutableRoaringBitmap> pinyinIndex;
+    
+    /**
+     * 首字母索引：层级名称（及简称）每种读音组合的首字母缩写（如"hzs"、"hz"） -> 行政区划序号位图
+     */
+    private final Map<String, ImmutableRoaringBitmap> initialsIndex;
+    
+    /**
+     * 同音字索引：层级名称的每一种拼音组合（含多音字） -> 行政区划序号位图
+     */
+    private final Map<String, ImmutableRoaringBitmap> homophoneIndex;
+    
+    /**
+     * 同音字索引中最长的拼音键长度，查询时超过该长度的组合直接剪枝
+     */
+    private final int maxHomophoneKeyLength;
+    
+    /**
+     * 二元组索引：层级名称和完整地址中每两个相邻字符 -> 行政区划序号位图，
+     * 用于省略后缀（"余杭仓前"）或层级顺序颠倒（"仓前街道余杭区"）的地址片段召回
+     */
+    private final Map<String, ImmutableRoaringBitmap> bigramIndex;
+    
+    /**
+     * 层级识别自动机：由全部层级名称和后缀关键词构建，用于一次扫描切分输入地址
+     */
+    private final LevelAutomaton levelAutomaton;
+    
+    /**
+     * 增量段：{@link #applyDelta} 新增或修改的行政区划，序号从基础段大小开始；没有变更时为 null
+     */
+    private final AddressIndex overlay;
+    
+    /**
+     * 墓碑：基础段中已删除或已被增量段替换的序号
+     */
+    private final ImmutableRoaringBitmap tombstones;
+    
+    AddressIndex(DivisionTable divisions, CompactTrie trie, LevelAutomaton levelAutomaton,
+                 Map<String, ImmutableRoaringBitmap> pinyinIndex, Map<String, ImmutableRoaringBitmap> initialsIndex,
+                 Map<String, ImmutableRoaringBitmap> homophoneIndex, int maxHomophoneKeyLength,
+                 Map<String, ImmutableRoaringBitmap> bigramIndex, Map<String, String[]> levelPinyinKeys) {
+        this.divisions = divisions;
+        this.hierarchy = DivisionHierarchy.build(divisions);
+        this.features = new DivisionFeatures[featureCacheSize(divisions.size())];
+        this.nameReadings = new AtomicReferenceArray<>(divisions.nameCount());
+        this.trie = trie;
+        this.levelAutomaton = levelAutomaton;
+        this.pinyinIndex = pinyinIndex;
+        this.initialsIndex = initialsIndex;
+        this.homophoneIndex = homophoneIndex;
+        this.maxHomophoneKeyLength = maxHomophoneKeyLength;
+        this.bigramIndex = bigramIndex;
+        this.levelPinyinKeys = levelPinyinKeys;
+        this.overlay = null;
+        this.tombstones = new MutableRoaringBitmap();
+        this.generation = nextGeneration();
+    }
+    
+    /**
+     * 新版本与 base 共享基础段的全部结构（含已生成的打分特征），只替换增量段和墓碑
+     */
+    private AddressIndex(AddressIndex base, AddressIndex overlay, ImmutableRoaringBitmap tombstones) {
+        this.divisions = base.divisions;
+        this.hierarchy = base.hierarchy;
+        this.features = base.features;
+        this.nameReadings = base.nameReadings;
+        this.trie = base.trie;
+        this.levelAutomaton = base.levelAutomaton;
+        this.pinyinIndex = base.pinyinIndex;
+        this.initialsIndex = base.initialsIndex;
+        this.homophoneIndex = base.homophoneIndex;
+        this.maxHomophoneKeyLength = base.maxHomophoneKeyLength;
+        this.bigramIndex = base.bigramIndex;
+        this.levelPinyinKeys = base.levelPinyinKeys;
+        this.overlay = overlay;
+        this.tombstones = tombstones;
+        this.generation = nextGeneration();
+    }
     
     /**
      * 构建索引
+     * 每次构建都生成新的索引实例，已发布的索引不会被修改，重新加载数据时由调用方原子替换引用
      */
-    public void buildIndex(List<AdministrativeDivision> divisions) {
-        divisionMap.clear();
-        invertedIndex.clear();
-        pinyinIndex.clear();
-        trieRoot.clear();
-        
-        for (AdministrativeDivision division : divisions) {
-            divisionMap.put(division.getCode(), division);
-            
-            // 为每个层级建立索引
-            String[] levels = division.getLevels();
-            for (String level : levels) {
-                if (level != null && !level.isEmpty()) {
-                    // 倒排索引
-                    invertedIndex.computeIfAbsent(level, k -> new HashSet<>()).add(division.getCode());
-                    
-                    // 前缀树索引
-                    addToTrie(level, division.getCode());
-                    
-                    // 拼音索引
-                    String pinyin = PinyinUtil.getPinyin(level);
-                    if (!pinyin.equals(level)) {
-                        pinyinIndex.computeIfAbsent(pinyin, k -> new HashSet<>()).add(level);
+    public static AddressIndex build(List<AdministrativeDivision> divisions) {
+        return build(divisions, Collections.emptyMap(), true);
+    }
+    
+    /**
+     * 构建索引
+     * 解析（按编码分配序号）之后的各阶段在 fork-join 线程池上并行执行：收集层级名称、逐个名称生成拼音键、
+     * 按输入行分片构建倒排记录，最后两两合并分片。分片结果按首次出现的顺序合并，
+     * 生成的索引（包括快照字节）与逐条构建完全相同，与并行度无关
+     *
+     * @param knownPinyinKeys 已知层级名称的拼音组合，命中时不再重新计算
+     * @param withSuffixes    层级识别自动机是否包含后缀关键词，增量段不包含
+     */
+    private static AddressIndex build(List<AdministrativeDivision> divisions,
+                                      Map<String, String[]> knownPinyinKeys, boolean withSuffixes) {
+        return build(divisions, knownPinyinKeys, withSuffixes, ForkJoinPool.commonPool());
+    }
+    
+    /**
+     * 在指定线程池上构建索引
+     */
+    static AddressIndex build(List<AdministrativeDivision> divisions, ForkJoinPool pool) {
+        return build(divisions, Collections.emptyMap(), true, pool);
+    }
+    
+    private static AddressIndex build(List<AdministrativeDivision> divisions, Map<String, String[]> knownPinyinKeys,
+                                      boolean withSuffixes, ForkJoinPool pool) {
+        // 1. 解析：分配序号，编码重复时以后出现的为准，沿用首次出现的序号
+        AdministrativeDivision[] rows = divisions.toArray(new AdministrativeDivision[0]);
+        int[] rowOrdinals = new int[rows.length];
+        List<AdministrativeDivision> divisionList = new ArrayList<>();
+        Map<String, Integer> ordinalMap = new HashMap<>();
+        for (int row = 0; row < rows.length; row++) {
+            Integer existing = ordinalMap.putIfAbsent(rows[row].getCode(), divisionList.size());
+            if (existing == null) {
+                rowOrdinals[row] = divisionList.size();
+                divisionList.add(rows[row]);
+            } else {
+                rowOrdinals[row] = existing;
+                divisionList.set(existing, rows[row]);
+            }
+        }
+        
+        // 2. 层级名称 -> {首次出现的层级, 出现过的层级标志}，按首次出现的顺序排列
+        Map<String, int[]> levelNames = pool.invoke(new RangeTask<>(0, rows.length, BUILD_SHARD_ROWS,
+                (from, to) -> collectLevelNames(rows, from, to), AddressIndex::mergeLevelNames));
+        
+        // 3. 同名层级（如"浙江省"）只计算一次拼音和拼音组合，每个名称相互独立
+        String[] names = levelNames.keySet().toArray(new String[0]);
+        String[][] fuzzyKeys = new String[names.length][];
+        String[][] initialsKeys = new String[names.length][];
+        String[][] combinations = new String[names.length][];
+        int maxHomophoneKeyLength = pool.invoke(new RangeTask<>(0, names.length, PINYIN_SHARD_NAMES, (from, to) -> {
+            int maxLength = 0;
+            for (int i = from; i < to; i++) {
+                int level = levelNames.get(names[i])[0];
+                fuzzyKeys[i] = fuzzyKeys(names[i], level);
+                initialsKeys[i] = initialsKeys(names[i], level);
+                String[] known = knownPinyinKeys.get(names[i]);
+                combinations[i] = known != null ? known
+                        : PinyinUtil.getAllPinyinCombinations(names[i]).toArray(new String[0]);
+                for (String combination : combinations[i]) {
+                    maxLength = Math.max(maxLength, combination.length());
+                }
+            }
+            return maxLength;
+        }, Math::max));
+        
+        Map<String, Integer> nameIds = new HashMap<>();
+        Map<String, String[]> levelCombinations = new HashMap<>();
+        Map<String, Integer> levelFlags = new HashMap<>();
+        for (int i = 0; i < names.length; i++) {
+            int id = i;
+            nameIds.put(names[i], id);
+            levelCombinations.put(names[i], combinations[id]);
+            levelFlags.put(names[i], levelNames.get(names[i])[1]);
+        }
+        
+        // 4. 按输入行分片构建倒排记录，再两两合并；层级名称只按名称编号记录一次
+        Postings postings = pool.invoke(new RangeTask<>(0, rows.length, BUILD_SHARD_ROWS, (from, to) -> {
+            Postings shard = new Postings();
+            for (int row = from; row < to; row++) {
+                int ordinal = rowOrdinals[row];
+                for (String level : rows[row].getLevels()) {
+                    if (level != null && !level.isEmpty()) {
+                        shard.names.computeIfAbsent(nameIds.get(level), id -> new MutableRoaringBitmap()).add(ordinal);
+                        addBigrams(shard.bigram, level, ordinal);
                     }
                 }
+                
+                // 为完整地址建立索引
+                String fullAddress = rows[row].getFullAddress();
+                addPosting(shard.inverted, fullAddress, ordinal);
+                addBigrams(shard.bigram, fullAddress, ordinal);
             }
-            
-            // 为完整地址建立索引
-            String fullAddress = division.getFullAddress();
-            invertedIndex.computeIfAbsent(fullAddress, k -> new HashSet<>()).add(division.getCode());
-            addToTrie(fullAddress, division.getCode());
+            return shard;
+        }, Postings::merge));
+        
+        // 按行政区划编码顺序加载时，同省同市的序号是连续的，游程编码可以大幅压缩
+        MutableRoaringBitmap[] nameBitmaps = new MutableRoaringBitmap[names.length];
+        postings.names.forEach((id, bitmap) -> nameBitmaps[id] = bitmap);
+        List<MutableRoaringBitmap> bitmaps = new ArrayList<>(Arrays.asList(nameBitmaps));
+        bitmaps.addAll(postings.inverted.values());
+        bitmaps.addAll(postings.bigram.values());
+        runOptimize(bitmaps, pool);
+        
+        // 5. 拼音、首字母和同音字倒排记录由含该键的名称的位图合并得到
+        Map<String, MutableRoaringBitmap> pinyinIndex = keyPostings(fuzzyKeys, nameBitmaps, pool);
+        Map<String, MutableRoaringBitmap> initialsIndex = keyPostings(initialsKeys, nameBitmaps, pool);
+        Map<String, MutableRoaringBitmap> homophoneIndex = keyPostings(combinations, nameBitmaps, pool);
+        
+        // 前缀树索引：层级名称和完整地址
+        Map<String, MutableRoaringBitmap> invertedIndex = postings.inverted;
+        for (int id = 0; id < names.length; id++) {
+            invertedIndex.merge(names[id], nameBitmaps[id], (address, name) -> {
+                MutableRoaringBitmap merged = MutableRoaringBitmap.or(address, name);
+                merged.runOptimize();
+                return merged;
+            });
         }
+        
+        return new AddressIndex(DivisionTable.build(divisionList), CompactTrie.build(invertedIndex),
+                LevelAutomaton.build(levelFlags, withSuffixes), toIndex(pinyinIndex),
+                toIndex(initialsIndex), toIndex(homophoneIndex),
+                maxHomophoneKeyLength, toIndex(postings.bigram), levelCombinations);
     }
     
     /**
-     * 添加到前缀树
+     * 名称编号 -> 键的倒排记录：键按首次出现的顺序排列（与逐行记录时相同），
+     * 只属于一个名称的键直接共用该名称的位图，其余为所属名称位图的并集
+     *
+     * @param keysByName  名称编号 -> 该名称的键
+     * @param nameBitmaps 名称编号 -> 含该名称的行政区划序号
      */
-    private void addToTrie(String word, String code) {
-        TrieNode node = trieRoot;
-        for (char c : word.toCharArray()) {
-            node = node.getOrCreateChild(c);
-            node.addCode(code);
+    private static Map<String, MutableRoaringBitmap> keyPostings(String[][] keysByName,
+                                                                 MutableRoaringBitmap[] nameBitmaps, ForkJoinPool pool) {
+        Map<String, MutableRoaringBitmap> keyNames = new LinkedHashMap<>();
+        for (int id = 0; id < keysByName.length; id++) {
+            for (String key : keysByName[id]) {
+                addPosting(keyNames, key, id);
+            }
+        }
+        String[] keys = keyNames.keySet().toArray(new String[0]);
+        MutableRoaringBitmap[] postings = new MutableRoaringBitmap[keys.length];
+        pool.invoke(new RangeTask<>(0, keys.length, BUILD_SHARD_ROWS, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                MutableRoaringBitmap ids = keyNames.get(keys[i]);
+                if (ids.getCardinality() == 1) {
+                    postings[i] = nameBitmaps[ids.first()];
+                } else {
+                    ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[ids.getCardinality()];
+                    int n = 0;
+                    for (IntIterator it = ids.getIntIterator(); it.hasNext(); ) {
+                        bitmaps[n++] = nameBitmaps[it.next()];
+                    }
+                    postings[i] = BufferFastAggregation.or(bitmaps);
+                    postings[i].runOptimize();
+                }
+            }
+            return null;
+        }, (a, b) -> null));
+        
+        Map<String, MutableRoaringBitmap> index = new LinkedHashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            index.put(keys[i], postings[i]);
+        }
+        return index;
+    }
+    
+    private static void runOptimize(List<MutableRoaringBitmap> bitmaps, ForkJoinPool pool) {
+        pool.invoke(new RangeTask<>(0, bitmaps.size(), BUILD_SHARD_ROWS, (from, to) -> {
+            for (int i = from; i < to; i++) {
+                bitmaps.get(i).runOptimize();
+            }
+            return null;
+        }, (a, b) -> null));
+    }
+    
+    private static Map<String, int[]> collectLevelNames(AdministrativeDivision[] rows, int from, int to) {
+        Map<String, int[]> names = new LinkedHashMap<>();
+        for (int row = from; row < to; row++) {
+            String[] levels = rows[row].getLevels();
+            for (int i = 0; i < levels.length; i++) {
+                if (levels[i] != null && !levels[i].isEmpty()) {
+                    int[] entry = names.get(levels[i]);
+                    if (entry == null) {
+                        entry = new int[]{i, 0};
+                        names.put(levels[i], entry);
+                    }
+                    entry[1] |= LevelAutomaton.nameFlag(i);
+                }
+            }
         }
+        return names;
     }
     
     /**
-     * 通过关键词查找匹配的编码
+     * 合并相邻分片的层级名称，right 在 left 之后：首次出现的层级以 left 为准，层级标志取并集
      */
-    public Set<String> searchByKeyword(String keyword) {
-        Set<String> codes = new HashSet<>();
+    private static Map<String, int[]> mergeLevelNames(Map<String, int[]> left, Map<String, int[]> right) {
+        right.forEach((name, entry) -> left.merge(name, entry, (a, b) -> {
+            a[1] |= b[1];
+            return a;
+        }));
+        return left;
+    }
+    
+    /**
+     * 合并后的倒排记录转为只读索引；迭代顺序与分片方式有关，快照写入时按键排序
+     */
+    private static Map<String, ImmutableRoaringBitmap> toIndex(Map<String, MutableRoaringBitmap> postings) {
+        return new HashMap<>(postings);
+    }
+    
+    /**
+     * 应用增量变更，返回新版本的索引，当前索引不受影响，仍可被正在进行的查询使用
+     * 修改过的行政区划在新版本中获得新的序号（排在基础段之后）；
+     * 增量段过大时合并成一个全新构建的索引
+     */
+    public AddressIndex applyDelta(List<DivisionChange> changes) {
+        // 增量段中仍然有效的行政区划，按编码去重，保持加入顺序
+        Map<String, AdministrativeDivision> overlayDivisions = new LinkedHashMap<>();
+        if (overlay != null) {
+            for (int ordinal = 0; ordinal < overlay.divisions.size(); ordinal++) {
+                AdministrativeDivision division = overlay.divisions.get(ordinal);
+                overlayDivisions.put(division.getCode(), division);
+            }
+        }
+        MutableRoaringBitmap newTombstones = tombstones.toMutableRoaringBitmap();
         
-        // 精确匹配
-        if (invertedIndex.containsKey(keyword)) {
-            codes.addAll(invertedIndex.get(keyword));
+        for (DivisionChange change : changes) {
+            String code = change.getCode();
+            int baseOrdinal = divisions.ordinalOf(code);
+            if (baseOrdinal >= 0) {
+                newTombstones.add(baseOrdinal);
+            }
+            overlayDivisions.remove(code);
+            if (change.getType() != DivisionChange.Type.REMOVE) {
+                overlayDivisions.put(code, change.getDivision());
+            }
+        }
+        
+        if (overlayDivisions.size() > Math.max(MIN_COMPACTION_SIZE, divisions.size() / 4)) {
+            List<AdministrativeDivision> all = new ArrayList<>(divisions.size() + overlayDivisions.size());
+            for (int ordinal = 0; ordinal < divisions.size(); ordinal++) {
+                if (!newTombstones.contains(ordinal)) {
+                    all.add(divisions.get(ordinal));
+                }
+            }
+            all.addAll(overlayDivisions.values());
+            return build(all, levelPinyinKeys, true);
+        }
+        
+        newTombstones.runOptimize();
+        AddressIndex newOverlay = overlayDivisions.isEmpty() ? null
+                : build(new ArrayList<>(overlayDivisions.values()), levelPinyinKeys, false);
+        return new AddressIndex(this, newOverlay, newTombstones);
+    }
+    
+    /**
+     * 是否包含增量段或墓碑
+     */
+    boolean hasDelta() {
+        return overlay != null || !tombstones.isEmpty();
+    }
+    
+    /**
+     * 把增量段和基础段合并成一个全新构建的索引，序号重新连续分配
+     */
+    AddressIndex compact() {
+        return build(new ArrayList<>(getAllDivisions()), levelPinyinKeys, true);
+    }
+    
+    /**
+     * 层级名称及其简称的全部模糊拼音，纯字母数字的名称没有拼音键
+     */
+    private static String[] fuzzyKeys(String name, int level) {
+        Set<String> keys = new HashSet<>();
+        for (String variant : nameVariants(name, level)) {
+            keys.addAll(PinyinUtil.getFuzzyPinyinCombinations(variant, Integer.MAX_VALUE));
+        }
+        keys.remove(name);
+        return keys.toArray(new String[0]);
+    }
+    
+    private static String[] initialsKeys(String name, int level) {
+        Set<String> keys = new HashSet<>();
+        for (String variant : nameVariants(name, level)) {
+            keys.addAll(PinyinUtil.getInitialsCombinations(variant));
+        }
+        return keys.toArray(new String[0]);
+    }
+    
+    /**
+     * 名称本身和去掉该层级最长后缀关键词后的简称（如"杭州市" -> "杭州"），简称少于 2 个字时不使用
+     */
+    static List<String> nameVariants(String name, int level) {
+        String shortName = null;
+        for (String suffix : LevelAutomaton.SUFFIX_KEYWORDS[level]) {
+            if (name.endsWith(suffix) && name.length() - suffix.length() >= 2
+                    && (shortName == null || name.length() - suffix.length() < shortName.length())) {
+                shortName = name.substring(0, name.length() - suffix.length());
+            }
+        }
+        return shortName != null ? Arrays.asList(name, shortName) : Collections.singletonList(name);
+    }
+    
+    private static void addPosting(Map<String, MutableRoaringBitmap> index, String key, int ordinal) {
+        index.computeIfAbsent(key, k -> new MutableRoaringBitmap()).add(ordinal);
+    }
+    
+    private static void addBigrams(Map<String, MutableRoaringBitmap> index, String text, int ordinal) {
+        for (int i = 0; i + 2 <= text.length(); i++) {
+            addPosting(index, text.substring(i, i + 2), ordinal);
         }
+    }
+    
+    /**
+     * 通过关键词查找匹配的行政区划序号
+     */
+    public MutableRoaringBitmap searchByKeyword(String keyword) {
+        MutableRoaringBitmap ordinals = new MutableRoaringBitmap();
+        
+        // 精确匹配
+        searchExact(keyword).forEach(ordinals::add);
         
         // 前缀匹配
-        codes.addAll(searchByPrefix(keyword));
+        searchByPrefix(keyword).forEach(ordinals::add);
         
         // 拼音匹配
-        codes.addAll(searchByPinyin(keyword));
+        ordinals.or(searchByPinyin(keyword));
         
-        return codes;
+        // 二元组匹配
+        ordinals.or(searchByNgram(keyword));
+        
+        return ordinals;
+    }
+    
+    /**
+     * 精确匹配
+     * 返回关键词自身的行政区划序号区间（升序、无重复）
+     */
+    public OrdinalRange searchExact(String keyword) {
+        int node = trie.find(keyword);
+        OrdinalRange base = node >= 0 ? trie.exact(node) : OrdinalRange.EMPTY;
+        return overlay == null ? base.excluding(tombstones)
+                : base.excluding(tombstones).concat(overlay.searchExact(keyword), divisions.size());
     }
     
     /**
      * 前缀匹配
+     * 返回前缀节点子树对应的行政区划序号区间视图，调用方可按需限量遍历
      */
-    public Set<String> searchByPrefix(String prefix) {
-        Set<String> codes = new HashSet<>();
-        TrieNode node = trieRoot;
-        
+    public OrdinalRange searchByPrefix(String prefix) {
         // 找到前缀对应的节点
-        for (char c : prefix.toCharArray()) {
-            node = node.getChild(c);
-            if (node == null) {
-                return codes; // 前缀不存在
+        int node = trie.find(prefix);
+        OrdinalRange base = node >= 0 ? trie.subtree(node) : OrdinalRange.EMPTY; // 前缀不存在时为空
+        return overlay == null ? base.excluding(tombstones)
+                : base.excluding(tombstones).concat(overlay.searchByPrefix(prefix), divisions.size());
+    }
+    
+    /**
+     * 拼音匹配
+     * 汉字关键词按全部读音组合的模糊拼音查找，字母关键词先切分音节再归一化为模糊拼音，并按首字母缩写查找；
+     * 每个键都是一次哈希查找，不再遍历拼音索引
+     */
+    public MutableRoaringBitmap searchByPinyin(String keyword) {
+        MutableRoaringBitmap ordinals = new MutableRoaringBitmap();
+        if (isLetters(keyword)) {
+            String lowerCase = keyword.toLowerCase();
+            orPosting(ordinals, initialsIndex, lowerCase);
+            String fuzzy = PinyinUtil.toFuzzyPinyin(lowerCase);
+            if (fuzzy != null) {
+                orPosting(ordinals, pinyinIndex, fuzzy);
+            }
+        } else {
+            for (String key : PinyinUtil.getFuzzyPinyinCombinations(keyword, maxHomophoneKeyLength)) {
+                orPosting(ordinals, pinyinIndex, key);
             }
         }
         
-        // 收集所有子节点的编码
-        collectCodes(node, codes);
-        return codes;
+        return withOverlay(ordinals, overlay != null ? overlay.searchByPinyin(keyword) : null);
     }
     
     /**
-     * 递归收集所有编码
+     * 同音字匹配
+     * 与 {@link PinyinUtil#isHomophone} 语义一致：关键词的任一拼音组合与某层级名称的任一拼音组合相同即命中，
+     * 通过哈希查找代替对所有行政区划的逐个比较
      */
-    private void collectCodes(TrieNode node, Set<String> codes) {
-        codes.addAll(node.getCodes());
-        for (TrieNode child : node.getChildren().values()) {
-            collectCodes(child, codes);
+    public MutableRoaringBitmap searchByHomophone(String keyword) {
+        MutableRoaringBitmap ordinals = new MutableRoaringBitmap();
+        for (String combination : PinyinUtil.getAllPinyinCombinations(keyword, maxHomophoneKeyLength)) {
+            ImmutableRoaringBitmap matched = homophoneIndex.get(combination);
+            if (matched != null) {
+                ordinals.or(matched);
+            }
         }
+        return withOverlay(ordinals, overlay != null ? overlay.searchByHomophone(keyword) : null);
     }
     
     /**
-     * 拼音匹配
+     * 编辑距离匹配
+     * 返回层级名称或完整地址与关键词的编辑距离不超过上限（按关键词长度取 0~2，见 {@link LevenshteinAutomaton#maxDistance}）
+     * 的行政区划序号，用于形近字替换、漏字等输入错误。由 Levenshtein 自动机与前缀树求交，
+     * 只访问与关键词前缀足够接近的节点，不遍历全部名称
      */
-    public Set<String> searchByPinyin(String keyword) {
-        Set<String> codes = new HashSet<>();
-        String keywordPinyin = PinyinUtil.getPinyin(keyword);
-        
-        // 查找拼音相同的原始关键词
-        Set<String> matchedKeywords = new HashSet<>();
-        for (Map.Entry<String, Set<String>> entry : pinyinIndex.entrySet()) {
-            if (entry.getKey().contains(keywordPinyin) || keywordPinyin.contains(entry.getKey())) {
-                matchedKeywords.addAll(entry.getValue());
+    public MutableRoaringBitmap searchByEditDistance(String keyword) {
+        MutableRoaringBitmap ordinals = new MutableRoaringBitmap();
+        LevenshteinAutomaton automaton =
+                new LevenshteinAutomaton(keyword, LevenshteinAutomaton.maxDistance(keyword.length()));
+        trie.fuzzyFind(automaton, (range, distance) -> range.forEach(ordinals::add));
+        return withOverlay(ordinals, overlay != null ? overlay.searchByEditDistance(keyword) : null);
+    }
+    
+    /**
+     * 层级约束
+     * 返回输入已确定的省（及其下的市）子树内的行政区划序号；缺少省份时按市名找到各省的同名市（见 {@link DivisionHierarchy#scope}）
+     *
+     * @param levels 输入地址层级 [省, 市, 区, 街道]
+     * @return 范围内的行政区划序号，省和市都无法确定时返回 null
+     */
+    public MutableRoaringBitmap searchScope(String[] levels) {
+        MutableRoaringBitmap base = hierarchy.scope(levels);
+        MutableRoaringBitmap overlayScope = overlay != null ? overlay.searchScope(levels) : null;
+        if (base == null && overlayScope == null) {
+            return null;
+        }
+        return withOverlay(base != null ? base : new MutableRoaringBitmap(), overlayScope);
+    }
+    
+    /**
+     * 二元组匹配
+     * 把文本切成相邻字符二元组，返回至少包含其中三分之二（向上取整）不同二元组的行政区划序号，
+     * 与后缀和层级顺序无关。倒排列表按长度升序处理：由鸽巢原理，满足阈值的序号必然出现在最短的
+     * （列表数 - 阈值 + 1）个列表中，先合并这些短列表得到候选，再到较长的列表中逐个计数；
+     * 阈值等于全部二元组时退化为按长度顺序求交集
+     */
+    public MutableRoaringBitmap searchByNgram(String text) {
+        Set<String> grams = new HashSet<>();
+        List<ImmutableRoaringBitmap> postings = new ArrayList<>();
+        for (int i = 0; i + 2 <= text.length(); i++) {
+            String gram = text.substring(i, i + 2);
+            ImmutableRoaringBitmap posting = grams.add(gram) ? bigramIndex.get(gram) : null;
+            if (posting != null) {
+                postings.add(posting);
             }
         }
+        int minOverlap = (grams.size() * 2 + 2) / 3;
         
-        // 通过匹配的关键词查找编码
-        for (String matchedKeyword : matchedKeywords) {
-            if (invertedIndex.containsKey(matchedKeyword)) {
-                codes.addAll(invertedIndex.get(matchedKeyword));
+        MutableRoaringBitmap ordinals = new MutableRoaringBitmap();
+        if (minOverlap > 0 && postings.size() >= minOverlap) {
+            postings.sort(Comparator.comparingInt(ImmutableRoaringBitmap::getCardinality));
+            int candidateLists = postings.size() - minOverlap + 1;
+            for (int i = 0; i < candidateLists; i++) {
+                ordinals.or(postings.get(i));
+            }
+            if (candidateLists == 1) {
+                for (int i = 1; i < postings.size() && !ordinals.isEmpty(); i++) {
+                    ordinals.and(postings.get(i));
+                }
+            } else if (minOverlap > 1) {
+                ordinals = countOverlap(ordinals, postings, minOverlap);
             }
         }
-        
-        return codes;
+        return withOverlay(ordinals, overlay != null ? overlay.searchByNgram(text) : null);
+    }
+    
+    /**
+     * 保留在至少 minOverlap 个列表中出现的候选
+     * 候选按序号升序遍历，每个列表用一个只前进的迭代器跟随，已达到阈值或剩余列表不足以达到阈值时提前结束
+     */
+    private static MutableRoaringBitmap countOverlap(MutableRoaringBitmap candidates,
+                                                     List<ImmutableRoaringBitmap> postings, int minOverlap) {
+        PeekableIntIterator[] cursors = new PeekableIntIterator[postings.size()];
+        for (int i = 0; i < cursors.length; i++) {
+            cursors[i] = postings.get(i).getIntIterator();
+        }
+        MutableRoaringBitmap result = new MutableRoaringBitmap();
+        IntIterator it = candidates.getIntIterator();
+        while (it.hasNext()) {
+            int ordinal = it.next();
+            int overlap = 0;
+            for (int i = 0; i < cursors.length && overlap < minOverlap
+                    && overlap + cursors.length - i >= minOverlap; i++) {
+                cursors[i].advanceIfNeeded(ordinal);
+                if (cursors[i].hasNext() && cursors[i].peekNext() == ordinal) {
+                    overlap++;
+                }
+            }
+            if (overlap >= minOverlap) {
+                result.add(ordinal);
+            }
+        }
+        return result;
+    }
+    
+    private static void orPosting(MutableRoaringBitmap ordinals, Map<String, ImmutableRoaringBitmap> index, String key) {
+        ImmutableRoaringBitmap posting = index.get(key);
+        if (posting != null) {
+            ordinals.or(posting);
+        }
+    }
+    
+    private static boolean isLetters(String keyword) {
+        for (int i = 0; i < keyword.length(); i++) {
+            char c = keyword.charAt(i);
+            if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z')) {
+                return false;
+            }
+        }
+        return !keyword.isEmpty();
+    }
+    
+    /**
+     * 去掉基础段结果中的墓碑序号，并入平移后的增量段结果
+     */
+    private MutableRoaringBitmap withOverlay(MutableRoaringBitmap ordinals, MutableRoaringBitmap overlayOrdinals) {
+        if (!tombstones.isEmpty()) {
+            ordinals.andNot(tombstones);
+        }
+        if (overlayOrdinals != null && !overlayOrdinals.isEmpty()) {
+            ordinals.or(MutableRoaringBitmap.addOffset(overlayOrdinals, divisions.size()));
+        }
+        return ordinals;
+    }
+    
+    /**
+     * 索引代数，每次重新构建都会变大，用于让依赖旧索引的缓存失效
+     */
+    public long getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * 从全局代数计数器分配新的代数，按省分区的索引与完整索引使用同一序列
+     */
+    static long nextGeneration() {
+        return GENERATIONS.incrementAndGet();
+    }
+    
+    DivisionHierarchy getHierarchy() {
+        return hierarchy;
+    }
+    
+    DivisionTable getDivisionTable() {
+        return divisions;
+    }
+    
+    CompactTrie getTrie() {
+        return trie;
+    }
+    
+    Map<String, ImmutableRoaringBitmap> getPinyinIndex() {
+        return pinyinIndex;
+    }
+    
+    Map<String, ImmutableRoaringBitmap> getInitialsIndex() {
+        return initialsIndex;
+    }
+    
+    Map<String, ImmutableRoaringBitmap> getHomophoneIndex() {
+        return homophoneIndex;
+    }
+    
+    int getMaxHomophoneKeyLength() {
+        return maxHomophoneKeyLength;
+    }
+    
+    Map<String, ImmutableRoaringBitmap> getBigramIndex() {
+        return bigramIndex;
+    }
+    
+    Map<String, String[]> getLevelPinyinKeys() {
+        return levelPinyinKeys;
+    }
+    
+    /**
+     * 层级识别自动机
+     */
+    LevelAutomaton getLevelAutomaton() {
+        return levelAutomaton;
+    }
+    
+    /**
+     * 增量段的层级识别自动机（只含新增的层级名称），没有增量段时为 null
+     */
+    LevelAutomaton getOverlayAutomaton() {
+        return overlay != null ? overlay.levelAutomaton : null;
     }
     
     /**
      * 获取行政区划对象
      */
     public AdministrativeDivision getDivision(String code) {
-        return divisionMap.get(code);
+        int ordinal = getOrdinal(code);
+        return ordinal >= 0 ? getDivision(ordinal) : null;
+    }
+    
+    /**
+     * 按序号获取行政区划对象
+     */
+    public AdministrativeDivision getDivision(int ordinal) {
+        int baseSize = divisions.size();
+        return ordinal < baseSize ? divisions.get(ordinal) : overlay.getDivision(ordinal - baseSize);
+    }
+    
+    /**
+     * 按序号获取打分特征，缓存未命中（首次用到或槽位已被其他序号占用）时重新生成
+     */
+    DivisionFeatures getFeatures(int ordinal) {
+        if (ordinal >= divisions.size()) {
+            return overlay.getFeatures(ordinal - divisions.size());
+        }
+        // 特征对象只含 final 字段，并发时最多重复生成，不会读到未初始化的对象
+        int slot = ordinal & (features.length - 1);
+        DivisionFeatures result = features[slot];
+        if (result == null || result.ordinal() != ordinal) {
+            String[] levels = new String[DivisionTable.LEVELS];
+            String[][][] readings = new String[DivisionTable.LEVELS][][];
+            for (int i = 0; i < levels.length; i++) {
+                int id = divisions.nameId(ordinal, i);
+                if (id >= 0) {
+                    levels[i] = divisions.name(id);
+                    readings[i] = nameReadings(id);
+                }
+            }
+            result = new DivisionFeatures(ordinal, levels, readings);
+            features[slot] = result;
+        }
+        return result;
+    }
+    
+    /**
+     * 打分特征缓存的槽位数：不小于行政区划数的 2 的幂，最多 {@link #MAX_CACHED_FEATURES}
+     */
+    private static int featureCacheSize(int divisionCount) {
+        int size = 1;
+        while (size < divisionCount && size < MAX_CACHED_FEATURES) {
+            size <<= 1;
+        }
+        return size;
+    }
+    
+    /**
+     * 名称的读音网格，惰性生成，并发时最多重复计算；读音数组不是 final 字段，经原子数组发布
+     */
+    private String[][] nameReadings(int id) {
+        String[][] readings = nameReadings.get(id);
+        if (readings == null) {
+            readings = PinyinUtil.getReadings(divisions.name(id));
+            nameReadings.set(id, readings);
+        }
+        return readings;
+    }
+    
+    /**
+     * 获取行政区划序号，不存在时返回 -1
+     */
+    public int getOrdinal(String code) {
+        if (overlay != null) {
+            int overlayOrdinal = overlay.getOrdinal(code);
+            if (overlayOrdinal >= 0) {
+                return divisions.size() + overlayOrdinal;
+            }
+        }
+        int ordinal = divisions.ordinalOf(code);
+        return ordinal >= 0 && !tombstones.contains(ordinal) ? ordinal : -1;
+    }
+    
+    /**
+     * 行政区划数量
+     */
+    public int size() {
+        return divisions.size() - tombstones.getCardinality() + (overlay != null ? overlay.size() : 0);
     }
     
     /**
-     * 获取所有行政区划
+     * 获取所有行政区划，每次调用都从行政区划表解码出新的对象
      */
     public Collection<AdministrativeDivision> getAllDivisions() {
-        return divisionMap.values();
+        List<AdministrativeDivision> all = new ArrayList<>(size());
+        for (int ordinal = 0; ordinal < divisions.size(); ordinal++) {
+            if (!tombstones.contains(ordinal)) {
+                all.add(divisions.get(ordinal));
+            }
+        }
+        if (overlay != null) {
+            all.addAll(overlay.getAllDivisions());
+        }
+        return Collections.unmodifiableList(all);
     }
     
     /**
-     * 前缀树节点
+     * 一个分片的倒排记录，完整地址和二元组按关键词首次出现的顺序排列
      */
-    private static class TrieNode {
-        private final Map<Character, TrieNode> children = new HashMap<>();
-        private final Set<String> codes = new HashSet<>();
+    private static final class Postings {
         
-        public TrieNode getOrCreateChild(char c) {
-            return children.computeIfAbsent(c, k -> new TrieNode());
-        }
+        /**
+         * 名称编号 -> 含该层级名称的行政区划序号
+         */
+        final Map<Integer, MutableRoaringBitmap> names = new HashMap<>();
+        final Map<String, MutableRoaringBitmap> inverted = new LinkedHashMap<>();
+        final Map<String, MutableRoaringBitmap> bigram = new LinkedHashMap<>();
         
-        public TrieNode getChild(char c) {
-            return children.get(c);
+        /**
+         * 把之后的相邻分片并入当前分片，同一关键词的位图取并集
+         */
+        Postings merge(Postings right) {
+            mergeInto(names, right.names);
+            mergeInto(inverted, right.inverted);
+            mergeInto(bigram, right.bigram);
+            return this;
         }
         
-        public void addCode(String code) {
-            codes.add(code);
+        private static <K> void mergeInto(Map<K, MutableRoaringBitmap> left, Map<K, MutableRoaringBitmap> right) {
+            right.forEach((key, bitmap) -> left.merge(key, bitmap, (a, b) -> {
+                a.or(b);
+                return a;
+            }));
         }
+    }
+    
+    /**
+     * 区间分片函数
+     */
+    @FunctionalInterface
+    private interface RangeFunction<T> {
+        T apply(int from, int to);
+    }
+    
+    /**
+     * 构建任务：按区间二分拆分，叶子分片独立计算，结果按区间顺序两两合并（左侧在前）
+     */
+    private static final class RangeTask<T> extends RecursiveTask<T> {
         
-        public Set<String> getCodes() {
-            return codes;
-        }
+        private final int from;
+        private final int to;
+        private final int threshold;
+        private final RangeFunction<T> leaf;
+        private final BinaryOperator<T> merge;
         
-        public Map<Character, TrieNode> getChildren() {
-            return children;
+        RangeTask(int from, int to, int threshold, RangeFunction<T> leaf, BinaryOperator<T> merge) {
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+            this.leaf = leaf;
+            this.merge = merge;
         }
         
-        public void clear() {
-            children.clear();
-            codes.clear();
+        @Override
+        protected T compute() {
+            if (to - from <= threshold) {
+                return leaf.apply(from, to);
+            }
+            int mid = (from + to) >>> 1;
+            RangeTask<T> left = new RangeTask<>(from, mid, threshold, leaf, merge);
+            left.fork();
+            T right = new RangeTask<>(mid, to, threshold, leaf, merge).compute();
+            return merge.apply(left.join(), right);
         }
     }
 }
-
@@ -0,0 +1,240 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 地址索引二进制快照
+ * 离线把构建好的 {@link AddressIndex} 写成带版本号的二进制文件，服务启动时用 {@link FileChannel#map} 映射加载，
+ * 不再逐行解析CSV、转换拼音和重建索引；同一主机上的多个 JVM 通过页缓存共享同一份文件。
+ * <p>
+ * 文件布局（大端序，每段数组补齐到 8 字节）：
+ * <pre>
+ * 文件头      魔数 "PVAI"、版本号、行政区划数、同音字最长键长度
+ * 字符串池    层级名称、拼音键等索引键，UTF-8，按编号引用
+ * 行政区划表  {@link DivisionTable} 的定宽槽位（编码偏移和四个层级名称编号）、名称偏移、UTF-8 字符串区和编码哈希表
+ * 前缀树      {@link CompactTrie} 的节点数组和序号数组
+ * 层级自动机  {@link LevelAutomaton} 的节点数组
+ * 拼音索引    模糊拼音键编号、位图偏移，随后是 Roaring 位图的标准序列化数据
+ * 首字母索引  同上
+ * 同音字索引  同上
+ * 二元组索引  同上
+ * 层级拼音    层级名称编号 -> 全部拼音组合的编号
+ * </pre>
+ * 行政区划表、前缀树数组和倒排位图直接引用映射内存；字符串池、行政区划表的名称池和各哈希表在加载时生成。
+ * 生成快照：{@code java -cp <classpath> com.petvetai.app.util.address.AddressIndexSnapshot <csv文件> <快照文件>}
+ *
+ * @author PetVetAI
+ */
+public final class AddressIndexSnapshot {
+    
+    static final int MAGIC = 0x50564149; // "PVAI"
+    static final int VERSION = 5;
+    
+    private AddressIndexSnapshot() {
+    }
+    
+    /**
+     * 把索引写成快照文件，先写临时文件再原子替换，正在读取旧快照的进程不受影响
+     */
+    public static void write(AddressIndex index, Path path) throws IOException {
+        // 快照只保存单段索引，带增量变更的索引先合并
+        if (index.hasDelta()) {
+            index = index.compact();
+        }
+        
+        // 字符串池：字符串 -> 编号
+        Map<String, Integer> pool = new LinkedHashMap<>();
+        List<Map.Entry<String, ImmutableRoaringBitmap>> pinyinEntries = new ArrayList<>(index.getPinyinIndex().entrySet());
+        List<Map.Entry<String, ImmutableRoaringBitmap>> initialsEntries =
+                new ArrayList<>(index.getInitialsIndex().entrySet());
+        List<Map.Entry<String, ImmutableRoaringBitmap>> homophoneEntries =
+                new ArrayList<>(index.getHomophoneIndex().entrySet());
+        List<Map.Entry<String, ImmutableRoaringBitmap>> bigramEntries = new ArrayList<>(index.getBigramIndex().entrySet());
+        // 索引中的哈希表迭代顺序取决于插入历史，按键排序后写入，相同内容的索引得到相同的快照
+        pinyinEntries.sort(Map.Entry.comparingByKey());
+        initialsEntries.sort(Map.Entry.comparingByKey());
+        homophoneEntries.sort(Map.Entry.comparingByKey());
+        bigramEntries.sort(Map.Entry.comparingByKey());
+        pinyinEntries.forEach(entry -> intern(pool, entry.getKey()));
+        initialsEntries.forEach(entry -> intern(pool, entry.getKey()));
+        homophoneEntries.forEach(entry -> intern(pool, entry.getKey()));
+        bigramEntries.forEach(entry -> intern(pool, entry.getKey()));
+        Map<String, String[]> levelPinyinKeys = new TreeMap<>(index.getLevelPinyinKeys());
+        levelPinyinKeys.forEach((name, keys) -> {
+            intern(pool, name);
+            for (String key : keys) {
+                intern(pool, key);
+            }
+        });
+        
+        Path parent = path.toAbsolutePath().getParent();
+        Files.createDirectories(parent);
+        Path temp = Files.createTempFile(parent, path.getFileName().toString(), ".tmp");
+        try {
+            try (SnapshotOutput out = new SnapshotOutput(Files.newOutputStream(temp))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(index.size());
+                out.writeInt(index.getMaxHomophoneKeyLength());
+                
+                out.writeStrings(new ArrayList<>(pool.keySet()));
+                index.getDivisionTable().writeTo(out);
+                index.getTrie().writeTo(out);
+                index.getLevelAutomaton().writeTo(out);
+                writePostings(out, pool, pinyinEntries);
+                writePostings(out, pool, initialsEntries);
+                writePostings(out, pool, homophoneEntries);
+                writePostings(out, pool, bigramEntries);
+                
+                int[] nameIds = new int[levelPinyinKeys.size()];
+                int[] keyOffsets = new int[levelPinyinKeys.size() + 1];
+                List<Integer> keyIds = new ArrayList<>();
+                int i = 0;
+                for (Map.Entry<String, String[]> entry : levelPinyinKeys.entrySet()) {
+                    nameIds[i] = pool.get(entry.getKey());
+                    for (String key : entry.getValue()) {
+                        keyIds.add(pool.get(key));
+                    }
+                    keyOffsets[++i] = keyIds.size();
+                }
+                out.writeInt(nameIds.length);
+                out.writeInts(IntBuffer.wrap(nameIds));
+                out.writeInts(IntBuffer.wrap(keyOffsets));
+                out.writeInts(IntBuffer.wrap(keyIds.stream().mapToInt(Integer::intValue).toArray()));
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+    
+    /**
+     * 映射快照文件并加载为索引
+     *
+     * @throws IOException 文件不存在、不是快照文件或版本不兼容
+     */
+    public static AddressIndex read(Path path) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        SnapshotInput in = new SnapshotInput(buffer);
+        if (in.readInt() != MAGIC) {
+            throw new IOException("不是地址索引快照文件: " + path);
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("不支持的地址索引快照版本: " + version + "（当前版本 " + VERSION + "）");
+        }
+        int divisionCount = in.readInt();
+        int maxHomophoneKeyLength = in.readInt();
+        
+        String[] strings = in.readStrings();
+        DivisionTable divisions = DivisionTable.readFrom(in);
+        if (divisions.size() != divisionCount) {
+            throw new IOException("地址索引快照已损坏: " + path);
+        }
+        
+        CompactTrie trie = CompactTrie.readFrom(in);
+        LevelAutomaton automaton = LevelAutomaton.readFrom(in);
+        Map<String, ImmutableRoaringBitmap> pinyinIndex = readPostings(in, strings);
+        Map<String, ImmutableRoaringBitmap> initialsIndex = readPostings(in, strings);
+        Map<String, ImmutableRoaringBitmap> homophoneIndex = readPostings(in, strings);
+        Map<String, ImmutableRoaringBitmap> bigramIndex = readPostings(in, strings);
+        
+        int nameCount = in.readInt();
+        IntBuffer nameIds = in.ints(nameCount);
+        IntBuffer keyOffsets = in.ints(nameCount + 1);
+        IntBuffer keyIds = in.ints(keyOffsets.get(nameCount));
+        Map<String, String[]> levelPinyinKeys = new HashMap<>(nameCount * 2);
+        for (int i = 0; i < nameCount; i++) {
+            String[] keys = new String[keyOffsets.get(i + 1) - keyOffsets.get(i)];
+            for (int k = 0; k < keys.length; k++) {
+                keys[k] = strings[keyIds.get(keyOffsets.get(i) + k)];
+            }
+            levelPinyinKeys.put(strings[nameIds.get(i)], keys);
+        }
+        
+        return new AddressIndex(divisions, trie, automaton, pinyinIndex, initialsIndex, homophoneIndex,
+                maxHomophoneKeyLength, bigramIndex, levelPinyinKeys);
+    }
+    
+    /**
+     * 倒排位图：数量、键编号、位图字节偏移（数量 + 1 个），随后是全部位图数据
+     */
+    private static void writePostings(SnapshotOutput out, Map<String, Integer> pool,
+                                      List<Map.Entry<String, ImmutableRoaringBitmap>> entries) throws IOException {
+        int[] keyIds = new int[entries.size()];
+        int[] offsets = new int[entries.size() + 1];
+        for (int i = 0; i < entries.size(); i++) {
+            keyIds[i] = pool.get(entries.get(i).getKey());
+            offsets[i + 1] = offsets[i] + entries.get(i).getValue().serializedSizeInBytes();
+        }
+        out.writeInt(entries.size());
+        out.writeInts(IntBuffer.wrap(keyIds));
+        out.writeInts(IntBuffer.wrap(offsets));
+        for (Map.Entry<String, ImmutableRoaringBitmap> entry : entries) {
+            out.writeBitmap(entry.getValue());
+        }
+        out.align();
+    }
+    
+    private static Map<String, ImmutableRoaringBitmap> readPostings(SnapshotInput in, String[] strings) {
+        int count = in.readInt();
+        IntBuffer keyIds = in.ints(count);
+        IntBuffer offsets = in.ints(count + 1);
+        int base = in.skip(offsets.get(count));
+        Map<String, ImmutableRoaringBitmap> postings = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            postings.put(strings[keyIds.get(i)],
+                    in.bitmap(base, offsets.get(i), offsets.get(i + 1) - offsets.get(i)));
+        }
+        return postings;
+    }
+    
+    private static int intern(Map<String, Integer> pool, String s) {
+        if (s == null) {
+            return -1;
+        }
+        Integer id = pool.putIfAbsent(s, pool.size());
+        return id != null ? id : pool.size() - 1;
+    }
+    
+    /**
+     * 命令行入口：由行政区划CSV生成快照文件
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("用法: AddressIndexSnapshot <csv文件> <快照文件>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        List<AdministrativeDivision> divisions;
+        try (InputStream is = Files.newInputStream(Paths.get(args[0]))) {
+            divisions = DivisionCsvReader.read(is);
+        }
+        AddressIndex index = AddressIndex.build(divisions);
+        Path output = Paths.get(args[1]);
+        write(index, output);
+        System.out.printf("已写入 %d 条行政区划到 %s（%d 字节，耗时 %d ms）%n", index.size(), output,
+                Files.size(output), (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -2,11 +2,10 @@ package com.petvetai.app.util.address;
 
 import com.petvetai.app.domain.address.AdministrativeDivision;
 import com.petvetai.app.domain.address.MatchResult;
-import com.petvetai.app.util.PinyinUtil;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
 
 import java.util.*;
-import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 /**
  * 地址匹配器
@@ -18,221 +17,203 @@ public class AddressMatcher {
     
     private final AddressIndex index;
     
-    // 行政区划关键词
-    private static final Set<String> PROVINCE_KEYWORDS = Set.of("省", "自治区", "特别行政区");
-    private static final Set<String> CITY_KEYWORDS = Set.of("市", "州", "盟", "地区");
-    private static final Set<String> DISTRICT_KEYWORDS = Set.of("区", "县", "旗", "自治县");
-    private static final Set<String> STREET_KEYWORDS = Set.of("街道", "镇", "乡", "街道办");
+    /**
+     * 匹配结果缓存，为 null 时不缓存
+     */
+    private final MatchResultCache cache;
+    
+    // 每个线程复用一个扫描器，避免每次请求分配缓冲区
+    private static final ThreadLocal<AddressScanner> SCANNER = ThreadLocal.withInitial(AddressScanner::new);
     
-    // 常见行政区划名称（用于异常检测）
-    private static final Pattern PROVINCE_PATTERN = Pattern.compile(".*?(省|自治区|特别行政区)");
-    private static final Pattern CITY_PATTERN = Pattern.compile(".*?(市|州|盟|地区)");
+    private static final double MAX_SCORE = 100.0;
     
     public AddressMatcher(AddressIndex index) {
+        this(index, null);
+    }
+    
+    public AddressMatcher(AddressIndex index, MatchResultCache cache) {
         this.index = index;
+        this.cache = cache;
+    }
+    
+    /**
+     * 匹配器使用的索引
+     */
+    public AddressIndex getIndex() {
+        return index;
     }
     
     /**
      * 匹配地址
+     * 配置了缓存时以标准化后的地址查询缓存，命中则跳过层级切分、候选召回和打分；
+     * 此时返回的结果是缓存中的只读对象（见 {@link MatchResultCache}）
      */
     public MatchResult match(String inputAddress) {
         if (inputAddress == null || inputAddress.trim().isEmpty()) {
             return null;
         }
-        
-        String normalizedAddress = normalizeAddress(inputAddress);
-        
-        // 1. 检测异常地址（多行政区划）
-        String abnormalReason = detectAbnormalAddress(normalizedAddress);
-        boolean isAbnormal = abnormalReason != null;
-        
-        // 2. 提取地址关键词
-        List<String> keywords = extractKeywords(normalizedAddress);
-        
-        // 3. 通过索引查找候选编码
-        Set<String> candidateCodes = findCandidateCodes(keywords);
-        
-        if (candidateCodes.isEmpty()) {
-            return new MatchResult(null, null, 0.0, isAbnormal, abnormalReason);
+        if (cache == null) {
+            return matchTopK(inputAddress, 1).get(0);
         }
         
-        // 4. 计算匹配度并排序
-        List<MatchResult> results = candidateCodes.stream()
-                .map(code -> calculateMatchScore(code, normalizedAddress, keywords))
-                .sorted((a, b) -> Double.compare(b.getScore(), a.getScore()))
-                .collect(Collectors.toList());
-        
-        MatchResult bestMatch = results.get(0);
-        bestMatch.setAbnormal(isAbnormal);
-        bestMatch.setAbnormalReason(abnormalReason);
-        
-        return bestMatch;
-    }
-    
-    /**
-     * 标准化地址（去除空格、标点等）
-     */
-    private String normalizeAddress(String address) {
-        return address.replaceAll("[\\s,，。、]", "");
+        AddressScanner scanner = SCANNER.get();
+        String normalizedAddress = scanner.scan(inputAddress, index.getLevelAutomaton(), index.getOverlayAutomaton());
+        long generation = index.getGeneration();
+        MatchResult cached = cache.get(generation, normalizedAddress);
+        if (cached != null) {
+            return cached;
+        }
+        return cache.put(generation, normalizedAddress, rank(normalizedAddress, scanner, 1).get(0));
     }
     
     /**
-     * 检测异常地址（多行政区划）
+     * 匹配地址，返回分数最高的 k 个结果（按分数降序，同分时按序号升序）
+     * 没有任何候选时返回一条编码为 null 的结果，携带异常检测信息；输入为空时返回空列表
      */
-    private String detectAbnormalAddress(String address) {
-        // 检测多个省份
-        long provinceCount = countMatches(address, PROVINCE_PATTERN);
-        if (provinceCount > 1) {
-            return "检测到多个省份";
+    public List<MatchResult> matchTopK(String inputAddress, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k 必须大于 0: " + k);
         }
-        
-        // 检测多个城市（排除直辖市）
-        long cityCount = countMatches(address, CITY_PATTERN);
-        if (cityCount > 2) { // 允许直辖市（如：北京市海淀区）
-            return "检测到多个城市";
-        }
-        
-        // 检测重复的行政区划层级
-        String[] commonProvinces = {"北京", "上海", "天津", "重庆", "浙江", "江苏", "广东", "山东", 
-                                     "河南", "四川", "湖北", "湖南", "河北", "安徽", "福建", "江西"};
-        int provinceOccurrences = 0;
-        for (String province : commonProvinces) {
-            if (address.contains(province + "省") || address.contains(province + "市")) {
-                provinceOccurrences++;
-            }
-        }
-        if (provinceOccurrences > 1) {
-            return "检测到多个省份名称";
+        if (inputAddress == null || inputAddress.trim().isEmpty()) {
+            return Collections.emptyList();
         }
         
-        return null;
-    }
-    
-    /**
-     * 统计匹配次数
-     */
-    private long countMatches(String text, Pattern pattern) {
-        return pattern.matcher(text).results().count();
+        // 1. 一次扫描完成标准化、层级识别和异常统计
+        AddressScanner scanner = SCANNER.get();
+        String normalizedAddress = scanner.scan(inputAddress, index.getLevelAutomaton(), index.getOverlayAutomaton());
+        return rank(normalizedAddress, scanner, k);
     }
     
     /**
-     * 提取地址关键词
+     * 匹配已标准化的地址（{@link AddressScanner#scan} 的返回值），供分区索引在路由扫描之后调用：
+     * 单个结果先查缓存，未命中时只用本索引的自动机重新记录层级命中，不再做标准化
      */
-    private List<String> extractKeywords(String address) {
-        List<String> keywords = new ArrayList<>();
-        
-        // 提取完整地址
-        keywords.add(address);
-        
-        // 提取各个层级
-        String[] levels = parseAddressLevels(address);
-        for (String level : levels) {
-            if (level != null && !level.isEmpty()) {
-                keywords.add(level);
+    List<MatchResult> matchNormalized(String normalizedAddress, int k) {
+        boolean cacheable = cache != null && k == 1;
+        long generation = index.getGeneration();
+        if (cacheable) {
+            MatchResult cached = cache.get(generation, normalizedAddress);
+            if (cached != null) {
+                return Collections.singletonList(cached);
             }
         }
         
-        // 提取部分匹配（处理缺少层级的情况）
-        if (levels[0] == null && levels[1] != null) {
-            // 缺少省份，只有市
-            keywords.add(levels[1]);
+        AddressScanner scanner = SCANNER.get();
+        scanner.rescan(normalizedAddress, index.getLevelAutomaton(), index.getOverlayAutomaton());
+        List<MatchResult> results = rank(normalizedAddress, scanner, k);
+        if (cacheable) {
+            return Collections.singletonList(cache.put(generation, normalizedAddress, results.get(0)));
         }
-        if (levels[1] == null && levels[2] != null) {
-            // 缺少市，只有区
-            keywords.add(levels[2]);
-        }
-        
-        return keywords;
+        return results;
     }
     
     /**
-     * 解析地址层级
+     * 对已扫描的地址召回候选并打分，返回前 k 名
      */
-    private String[] parseAddressLevels(String address) {
-        String province = null;
-        String city = null;
-        String district = null;
-        String street = null;
+    private List<MatchResult> rank(String normalizedAddress, AddressScanner scanner, int k) {
+        // 2. 切分地址层级并提取关键词（每个请求只解析一次），检测异常地址（多行政区划）
+        ParsedAddress parsed = ParsedAddress.parse(normalizedAddress, scanner);
+        String abnormalReason = parsed.abnormalReason();
+        boolean isAbnormal = abnormalReason != null;
         
-        // 解析省份
-        for (String keyword : PROVINCE_KEYWORDS) {
-            int index = address.indexOf(keyword);
-            if (index > 0) {
-                province = address.substring(0, index + keyword.length());
-                address = address.substring(index + keyword.length());
-                break;
-            }
-        }
+        // 3. 通过索引查找候选行政区划序号
+        MutableRoaringBitmap candidates = findCandidates(parsed);
         
-        // 解析城市
-        for (String keyword : CITY_KEYWORDS) {
-            int index = address.indexOf(keyword);
-            if (index > 0) {
-                city = address.substring(0, index + keyword.length());
-                address = address.substring(index + keyword.length());
-                break;
-            }
+        if (candidates.isEmpty()) {
+            return Collections.singletonList(new MatchResult(null, null, 0.0, isAbnormal, abnormalReason));
         }
         
-        // 解析区县
-        for (String keyword : DISTRICT_KEYWORDS) {
-            int index = address.indexOf(keyword);
-            if (index > 0) {
-                district = address.substring(0, index + keyword.length());
-                address = address.substring(index + keyword.length());
+        // 4. 计算匹配度，用定长小顶堆保留前 k 名；上界不超过当前第 k 名的候选跳过完整打分
+        ScoredOrdinalHeap heap = new ScoredOrdinalHeap(Math.min(k, candidates.getCardinality()));
+        IntIterator it = candidates.getIntIterator();
+        while (it.hasNext()) {
+            // 堆满且第 k 名已是满分，后面的候选（序号更大）不可能再进入
+            if (heap.isFull() && heap.threshold() >= MAX_SCORE) {
                 break;
             }
-        }
-        
-        // 解析街道
-        for (String keyword : STREET_KEYWORDS) {
-            int index = address.indexOf(keyword);
-            if (index > 0) {
-                street = address.substring(0, index + keyword.length());
-                break;
+            int ordinal = it.next();
+            double score = calculateMatchScore(index.getFeatures(ordinal), parsed, heap.threshold());
+            if (score >= 0) {
+                heap.offer(ordinal, score);
             }
         }
         
-        return new String[]{province, city, district, street};
+        // 只有最终结果才从行政区划表解码出编码和行政区划对象，每次解码都是新对象，调用方修改不影响索引
+        int[] ordinals = new int[heap.size()];
+        double[] scores = new double[heap.size()];
+        int count = heap.drain(ordinals, scores);
+        List<MatchResult> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            AdministrativeDivision division = index.getDivision(ordinals[i]);
+            results.add(new MatchResult(division.getCode(), division, scores[i],
+                    isAbnormal, abnormalReason));
+        }
+        return results;
     }
     
     /**
-     * 查找候选编码
+     * 查找候选行政区划序号
      */
-    private Set<String> findCandidateCodes(List<String> keywords) {
-        Set<String> candidateCodes = new HashSet<>();
+    private MutableRoaringBitmap findCandidates(ParsedAddress parsed) {
+        MutableRoaringBitmap candidates = new MutableRoaringBitmap();
         
-        for (String keyword : keywords) {
+        for (String keyword : parsed.keywords()) {
             // 精确匹配
-            candidateCodes.addAll(index.searchByKeyword(keyword));
+            OrdinalRange exact = index.searchExact(keyword);
+            exact.forEach(candidates::add);
+            
+            // 前缀匹配：只用于不完整的名称（如"杭州"、缺少街道的地址），展开整个子树，不截断；
+            // 关键词本身是索引中的名称时，子树中其余的键是以它开头的完整地址（与精确匹配的行政区划相同，
+            // 省名的子树有整个省）或更长的名称，不再展开
+            if (exact.isEmpty()) {
+                index.searchByPrefix(keyword).forEach(candidates::add);
+            }
+            
+            // 拼音匹配
+            candidates.or(index.searchByPinyin(keyword));
             
             // 同音字匹配
-            for (AdministrativeDivision division : index.getAllDivisions()) {
-                String[] levels = division.getLevels();
-                for (String level : levels) {
-                    if (level != null && PinyinUtil.isHomophone(keyword, level)) {
-                        candidateCodes.add(division.getCode());
-                    }
+            candidates.or(index.searchByHomophone(keyword));
+        }
+        
+        // 二元组匹配：省略后缀或层级顺序颠倒的地址片段
+        candidates.or(index.searchByNgram(parsed.address()));
+        
+        // 编辑距离匹配：层级名称不在索引中时（形近字、漏字）
+        for (String level : parsed.levels()) {
+            if (level != null && index.searchExact(level).isEmpty()) {
+                candidates.or(index.searchByEditDistance(level));
+            }
+        }
+        
+        // 层级约束：省或市已确定时只保留其子树内的候选，其他省的同名片段不再参与打分；
+        // 多行政区划的异常地址不约束，约束后没有候选时退回全部候选
+        if (parsed.abnormalReason() == null) {
+            MutableRoaringBitmap scope = index.searchScope(parsed.levels());
+            if (scope != null) {
+                scope.and(candidates);
+                if (!scope.isEmpty()) {
+                    return scope;
                 }
             }
         }
         
-        return candidateCodes;
+        return candidates;
     }
     
     /**
      * 计算匹配度分数
+     * 只读取索引缓存的打分特征（缓存未命中的候选先生成一次特征），缓存命中时对每个候选不产生任何分配。
+     * 先计算廉价的字符串比较部分，层级不相等时按同音字匹配的分数（8 分）估计上界；
+     * 上界不超过 threshold 时直接返回 -1，不再做同音字判断
      */
-    private MatchResult calculateMatchScore(String code, String inputAddress, List<String> keywords) {
-        AdministrativeDivision division = index.getDivision(code);
-        if (division == null) {
-            return new MatchResult(code, null, 0.0);
-        }
-        
+    private double calculateMatchScore(DivisionFeatures division, ParsedAddress parsed, double threshold) {
         double score = 0.0;
-        String fullAddress = division.getFullAddress();
-        String[] levels = division.getLevels();
-        String[] inputLevels = parseAddressLevels(inputAddress);
+        String inputAddress = parsed.address();
+        String[] inputLevels = parsed.levels();
+        List<String> keywords = parsed.keywords();
+        String fullAddress = division.fullAddress();
+        int levelCount = Math.min(division.levelCount(), inputLevels.length);
         
         // 1. 完整地址匹配（权重最高）
         if (inputAddress.equals(fullAddress)) {
@@ -241,44 +222,64 @@ public class AddressMatcher {
             score += 30.0;
         }
         
-        // 2. 层级匹配
-        for (int i = 0; i < Math.min(levels.length, inputLevels.length); i++) {
-            if (levels[i] != null && inputLevels[i] != null) {
-                if (levels[i].equals(inputLevels[i])) {
+        // 2. 层级匹配：先只比较是否相等，其余层级留待上界检查之后
+        int pendingLevels = 0;
+        for (int i = 0; i < levelCount; i++) {
+            String level = division.level(i);
+            if (level != null && inputLevels[i] != null) {
+                if (level.equals(inputLevels[i])) {
                     score += 10.0;
-                } else if (PinyinUtil.isHomophone(levels[i], inputLevels[i])) {
-                    score += 8.0; // 同音字匹配分数稍低
-                } else if (levels[i].contains(inputLevels[i]) || inputLevels[i].contains(levels[i])) {
-                    score += 5.0;
+                } else {
+                    pendingLevels++;
                 }
             }
         }
         
         // 3. 部分匹配（处理缺少层级的情况）
-        if (inputLevels[0] == null && levels[1] != null) {
+        if (inputLevels[0] == null && division.level(1) != null) {
             // 缺少省份，但城市匹配
-            if (inputAddress.contains(levels[1])) {
+            if (inputAddress.contains(division.level(1))) {
                 score += 15.0;
             }
         }
-        if (inputLevels[1] == null && levels[2] != null) {
+        if (inputLevels[1] == null && division.level(2) != null) {
             // 缺少城市，但区匹配
-            if (inputAddress.contains(levels[2])) {
+            if (inputAddress.contains(division.level(2))) {
                 score += 10.0;
             }
         }
         
-        // 4. 关键词匹配
-        for (String keyword : keywords) {
-            if (fullAddress.contains(keyword)) {
+        // 4. 关键词匹配（关键词列表支持随机访问，按下标遍历避免创建迭代器）
+        for (int i = 0; i < keywords.size(); i++) {
+            if (fullAddress.contains(keywords.get(i))) {
                 score += 2.0;
             }
         }
         
-        // 5. 归一化分数（0-100）
-        score = Math.min(100.0, score);
+        // 上界：未决层级全部按同音字匹配计分
+        if (Math.min(MAX_SCORE, score + 8.0 * pendingLevels) <= threshold) {
+            return -1;
+        }
+        
+        for (int i = 0; pendingLevels > 0 && i < levelCount; i++) {
+            String level = division.level(i);
+            String inputLevel = inputLevels[i];
+            if (level != null && inputLevel != null && !level.equals(inputLevel)) {
+                pendingLevels--;
+                int length = division.levelLength(i);
+                if (division.isHomophone(i, parsed.levelReadings(i))) {
+                    score += 8.0; // 同音字匹配分数稍低
+                } else {
+                    // 形近字、漏字：每处编辑扣 2 分；与包含关系取较高者
+                    int distance = parsed.levelEditDistance(i, level);
+                    double typoScore = distance >= 0 ? 8.0 - 2.0 * distance : 0.0;
+                    boolean contains = length >= inputLevel.length() ? level.contains(inputLevel) : inputLevel.contains(level);
+                    score += Math.max(typoScore, contains ? 5.0 : 0.0);
+                }
+            }
+        }
         
-        return new MatchResult(code, division, score);
+        // 5. 归一化分数（0-100）
+        return Math.min(MAX_SCORE, score);
     }
 }
-
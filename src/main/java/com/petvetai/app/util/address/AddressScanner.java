@@ -0,0 +1,189 @@
+package com.petvetai.app.util.address;
+
+import java.util.Arrays;
+
+/**
+ * 地址预处理扫描器
+ * 对输入做一次字符级扫描：去除空白和标点写入可复用缓冲区的同时驱动层级识别自动机，
+ * 记录所有命中并统计省、市后缀数量和出现的不同省级名称，异常检测不再需要正则和逐个 contains。
+ * 扫描器持有可复用的缓冲区，非线程安全，应每个线程持有一个实例
+ *
+ * @author PetVetAI
+ */
+final class AddressScanner implements LevelAutomaton.HitConsumer {
+    
+    private char[] buffer = new char[64];
+    private int length;
+    
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int[] flags = new int[16];
+    private int hitCount;
+    
+    private int provinceSuffixCount;
+    private int citySuffixCount;
+    
+    /**
+     * 第一个出现的省级名称的位置，-1 表示还没有出现
+     */
+    private int firstProvinceStart;
+    private int firstProvinceEnd;
+    private boolean multipleProvinceNames;
+    
+    /**
+     * 扫描输入地址，返回标准化后的地址（去除空白和 ,，。、）
+     */
+    String scan(String input, LevelAutomaton automaton) {
+        return scan(input, automaton, null);
+    }
+    
+    /**
+     * 同时用主自动机和增量自动机（不含后缀关键词，可为 null）扫描输入地址，命中合并记录
+     */
+    String scan(String input, LevelAutomaton automaton, LevelAutomaton extra) {
+        feed(input, automaton, extra);
+        return new String(buffer, 0, length);
+    }
+    
+    /**
+     * 用另一组自动机重新扫描 {@link #scan} 返回的标准化地址：只重新记录命中和异常统计，不再生成字符串
+     */
+    void rescan(String normalizedAddress, LevelAutomaton automaton, LevelAutomaton extra) {
+        feed(normalizedAddress, automaton, extra);
+    }
+    
+    private void feed(String input, LevelAutomaton automaton, LevelAutomaton extra) {
+        length = 0;
+        hitCount = 0;
+        provinceSuffixCount = 0;
+        citySuffixCount = 0;
+        firstProvinceStart = -1;
+        firstProvinceEnd = -1;
+        multipleProvinceNames = false;
+        
+        if (buffer.length < input.length()) {
+            buffer = new char[Math.max(input.length(), buffer.length * 2)];
+        }
+        
+        int state = 0;
+        int extraState = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (isSeparator(c)) {
+                continue;
+            }
+            buffer[length++] = c;
+            state = automaton.step(state, c);
+            automaton.emit(state, length, this);
+            if (extra != null) {
+                extraState = extra.step(extraState, c);
+                extra.emit(extraState, length, this);
+            }
+        }
+    }
+    
+    @Override
+    public void accept(int start, int end, int flag) {
+        if (hitCount == starts.length) {
+            starts = Arrays.copyOf(starts, hitCount * 2);
+            ends = Arrays.copyOf(ends, hitCount * 2);
+            flags = Arrays.copyOf(flags, hitCount * 2);
+        }
+        starts[hitCount] = start;
+        ends[hitCount] = end;
+        flags[hitCount] = flag;
+        hitCount++;
+        
+        if ((flag & LevelAutomaton.suffixFlag(LevelAutomaton.PROVINCE)) != 0) {
+            provinceSuffixCount++;
+        }
+        if ((flag & LevelAutomaton.suffixFlag(LevelAutomaton.CITY)) != 0) {
+            citySuffixCount++;
+        }
+        if ((flag & LevelAutomaton.nameFlag(LevelAutomaton.PROVINCE)) != 0) {
+            if (firstProvinceStart < 0) {
+                firstProvinceStart = start;
+                firstProvinceEnd = end;
+            } else if (!sameText(firstProvinceStart, firstProvinceEnd, start, end)) {
+                multipleProvinceNames = true;
+            }
+        }
+    }
+    
+    /**
+     * 检测异常地址（多行政区划），正常时返回 null
+     */
+    String abnormalReason() {
+        // 检测多个省份
+        if (provinceSuffixCount > 1) {
+            return "检测到多个省份";
+        }
+        
+        // 检测多个城市（排除直辖市）
+        if (citySuffixCount > 2) { // 允许直辖市（如：北京市海淀区）
+            return "检测到多个城市";
+        }
+        
+        // 检测重复的行政区划层级：出现了索引中两个不同的省级名称
+        if (multipleProvinceNames) {
+            return "检测到多个省份名称";
+        }
+        
+        return null;
+    }
+    
+    int hitCount() {
+        return hitCount;
+    }
+    
+    int hitStart(int i) {
+        return starts[i];
+    }
+    
+    int hitEnd(int i) {
+        return ends[i];
+    }
+    
+    int hitFlags(int i) {
+        return flags[i];
+    }
+    
+    /**
+     * 从 start 开始、带有指定标志位的最长命中的结束位置，没有时返回 -1
+     */
+    int longestHitAt(int start, int flag) {
+        int end = -1;
+        for (int i = 0; i < hitCount; i++) {
+            if (starts[i] == start && (flags[i] & flag) != 0 && ends[i] > end) {
+                end = ends[i];
+            }
+        }
+        return end;
+    }
+    
+    private boolean sameText(int start1, int end1, int start2, int end2) {
+        return end1 - start1 == end2 - start2
+                && Arrays.equals(buffer, start1, end1, buffer, start2, end2);
+    }
+    
+    /**
+     * 与原正则 [\s,，。、] 一致
+     */
+    private static boolean isSeparator(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+            case ',':
+            case '，':
+            case '。':
+            case '、':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
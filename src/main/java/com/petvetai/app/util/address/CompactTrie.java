@@ -0,0 +1,301 @@
+package com.petvetai.app.util.address;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Map;
+
+/**
+ * 紧凑前缀树
+ * 由全部关键词一次性构建的只读前缀树，按层序（LOUDS 风格）把节点编号为连续整数：
+ * 同一父节点的子节点编号连续且按字符有序，子节点通过二分查找定位。
+ * 倒排记录（行政区划序号）则按关键词字典序、也就是深度优先顺序连续存放，
+ * 每个节点覆盖有序关键词中的一段 [keyLo, keyHi)，其子树内的全部记录因此是记录数组中连续的一段，
+ * 前缀查询只需返回区间视图，不再递归复制子树。
+ * 数组以 NIO 缓冲区持有：构建时包装堆内数组，从快照加载时直接是内存映射文件的视图
+ *
+ * @author PetVetAI
+ */
+final class CompactTrie {
+    
+    /**
+     * 节点入边上的字符，根节点为 0
+     */
+    private final CharBuffer labels;
+    
+    /**
+     * 节点的第一个子节点编号，子节点范围为 [firstChild[node], firstChild[node + 1])，长度为节点数 + 1
+     */
+    private final IntBuffer firstChild;
+    
+    /**
+     * 节点覆盖的第一个关键词（有序关键词下标）
+     */
+    private final IntBuffer keyLo;
+    
+    /**
+     * 节点覆盖的关键词结束位置（不包含）
+     */
+    private final IntBuffer keyHi;
+    
+    /**
+     * 关键词恰好在该节点结束的节点
+     */
+    private final BitSet terminals;
+    
+    /**
+     * 第 k 个关键词的记录在 ordinals 中的起始位置，长度为关键词数 + 1
+     */
+    private final IntBuffer keyOffsets;
+    
+    /**
+     * 全部倒排记录，按关键词字典序连续存放
+     */
+    private final IntBuffer ordinals;
+    
+    private CompactTrie(CharBuffer labels, IntBuffer firstChild, IntBuffer keyLo, IntBuffer keyHi,
+                        BitSet terminals, IntBuffer keyOffsets, IntBuffer ordinals) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.keyLo = keyLo;
+        this.keyHi = keyHi;
+        this.terminals = terminals;
+        this.keyOffsets = keyOffsets;
+        this.ordinals = ordinals;
+    }
+    
+    /**
+     * 从关键词 -> 行政区划序号位图构建前缀树
+     */
+    static CompactTrie build(Map<String, ? extends ImmutableRoaringBitmap> postings) {
+        String[] keys = postings.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        
+        // 按字典序排列倒排记录，即深度优先顺序
+        int[] keyOffsets = new int[keys.length + 1];
+        for (int k = 0; k < keys.length; k++) {
+            keyOffsets[k + 1] = keyOffsets[k] + postings.get(keys[k]).getCardinality();
+        }
+        int[] ordinals = new int[keyOffsets[keys.length]];
+        for (int k = 0; k < keys.length; k++) {
+            // 位图按序号升序输出
+            int[] keyOrdinals = postings.get(keys[k]).toArray();
+            System.arraycopy(keyOrdinals, 0, ordinals, keyOffsets[k], keyOrdinals.length);
+        }
+        
+        // 按层序展开节点：每个节点对应有序关键词中的一段 [lo, hi)，这段关键词共享长度为 depth 的前缀
+        int capacity = Math.max(16, keys.length * 2);
+        char[] labels = new char[capacity];
+        int[] firstChild = new int[capacity + 1];
+        int[] keyLo = new int[capacity];
+        int[] keyHi = new int[capacity];
+        int[] depths = new int[capacity];
+        BitSet terminals = new BitSet();
+        
+        keyHi[0] = keys.length;
+        int nodeCount = 1;
+        for (int node = 0; node < nodeCount; node++) {
+            int lo = keyLo[node];
+            int hi = keyHi[node];
+            int depth = depths[node];
+            
+            if (lo < hi && keys[lo].length() == depth) {
+                terminals.set(node);
+                lo++;
+            }
+            
+            firstChild[node] = nodeCount;
+            while (lo < hi) {
+                char c = keys[lo].charAt(depth);
+                int end = lo + 1;
+                while (end < hi && keys[end].charAt(depth) == c) {
+                    end++;
+                }
+                if (nodeCount == labels.length) {
+                    int newCapacity = labels.length * 2;
+                    labels = Arrays.copyOf(labels, newCapacity);
+                    firstChild = Arrays.copyOf(firstChild, newCapacity + 1);
+                    keyLo = Arrays.copyOf(keyLo, newCapacity);
+                    keyHi = Arrays.copyOf(keyHi, newCapacity);
+                    depths = Arrays.copyOf(depths, newCapacity);
+                }
+                labels[nodeCount] = c;
+                keyLo[nodeCount] = lo;
+                keyHi[nodeCount] = end;
+                depths[nodeCount] = depth + 1;
+                nodeCount++;
+                lo = end;
+            }
+        }
+        firstChild[nodeCount] = nodeCount;
+        
+        return new CompactTrie(
+                CharBuffer.wrap(Arrays.copyOf(labels, nodeCount)),
+                IntBuffer.wrap(Arrays.copyOf(firstChild, nodeCount + 1)),
+                IntBuffer.wrap(Arrays.copyOf(keyLo, nodeCount)),
+                IntBuffer.wrap(Arrays.copyOf(keyHi, nodeCount)),
+                terminals,
+                IntBuffer.wrap(keyOffsets),
+                IntBuffer.wrap(ordinals));
+    }
+    
+    /**
+     * 写入快照：节点数、关键词数、记录数，随后依次为各数组
+     */
+    void writeTo(SnapshotOutput out) throws IOException {
+        int nodeCount = labels.limit();
+        int keyCount = keyOffsets.limit() - 1;
+        out.writeInt(nodeCount);
+        out.writeInt(keyCount);
+        out.writeInt(ordinals.limit());
+        out.writeChars(labels);
+        out.writeInts(firstChild);
+        out.writeInts(keyLo);
+        out.writeInts(keyHi);
+        out.writeLongs(terminals.toLongArray(), (nodeCount + 63) / 64);
+        out.writeInts(keyOffsets);
+        out.writeInts(ordinals);
+    }
+    
+    /**
+     * 从快照读取，数组直接引用快照缓冲区，不做复制
+     */
+    static CompactTrie readFrom(SnapshotInput in) {
+        int nodeCount = in.readInt();
+        int keyCount = in.readInt();
+        int ordinalCount = in.readInt();
+        CharBuffer labels = in.chars(nodeCount);
+        IntBuffer firstChild = in.ints(nodeCount + 1);
+        IntBuffer keyLo = in.ints(nodeCount);
+        IntBuffer keyHi = in.ints(nodeCount);
+        BitSet terminals = BitSet.valueOf(in.longs((nodeCount + 63) / 64));
+        IntBuffer keyOffsets = in.ints(keyCount + 1);
+        IntBuffer ordinals = in.ints(ordinalCount);
+        return new CompactTrie(labels, firstChild, keyLo, keyHi, terminals, keyOffsets, ordinals);
+    }
+    
+    /**
+     * 空前缀树
+     */
+    static CompactTrie empty() {
+        return build(Map.of());
+    }
+    
+    /**
+     * 查找关键词对应的节点，不存在时返回 -1
+     */
+    int find(CharSequence key) {
+        int node = 0;
+        for (int i = 0; i < key.length(); i++) {
+            node = child(node, key.charAt(i));
+            if (node < 0) {
+                return -1;
+            }
+        }
+        return node;
+    }
+    
+    /**
+     * 节点子树内全部关键词的记录区间
+     */
+    OrdinalRange subtree(int node) {
+        return new OrdinalRange(ordinals, keyOffsets.get(keyLo.get(node)), keyOffsets.get(keyHi.get(node)));
+    }
+    
+    /**
+     * 恰好在节点结束的关键词自身的记录区间，非关键词结束节点返回空区间
+     */
+    OrdinalRange exact(int node) {
+        if (!terminals.get(node)) {
+            return OrdinalRange.EMPTY;
+        }
+        int key = keyLo.get(node);
+        return new OrdinalRange(ordinals, keyOffsets.get(key), keyOffsets.get(key + 1));
+    }
+    
+    /**
+     * 与 Levenshtein 自动机求交，回调编辑距离不超过上限的全部关键词的记录区间
+     */
+    void fuzzyFind(LevenshteinAutomaton automaton, FuzzyConsumer consumer) {
+        fuzzyFind(0, 0, 0, automaton, consumer);
+    }
+    
+    /**
+     * @param min 节点状态中的最小值
+     */
+    private void fuzzyFind(int node, int depth, int min, LevenshteinAutomaton automaton, FuzzyConsumer consumer) {
+        if (min < automaton.maxDistance()) {
+            // 还有编辑余量：任何字符都可能被接受，逐个尝试全部子节点
+            int end = firstChild.get(node + 1);
+            for (int child = firstChild.get(node); child < end; child++) {
+                visitFuzzy(child, depth, automaton, consumer);
+            }
+        } else {
+            // 余量已用完：只有与模式串中距离恰好等于上限的位置上的字符相同的子节点才可能被接受，二分查找定位
+            char[] chars = new char[2 * LevenshteinAutomaton.MAX_DISTANCE + 1];
+            int count = automaton.exactChars(depth, chars);
+            for (int i = 0; i < count; i++) {
+                int child = child(node, chars[i]);
+                if (child >= 0) {
+                    visitFuzzy(child, depth, automaton, consumer);
+                }
+            }
+        }
+    }
+    
+    private void visitFuzzy(int child, int depth, LevenshteinAutomaton automaton, FuzzyConsumer consumer) {
+        // 子节点逐个覆盖同一深度的状态行，更深的状态行在递归中重新计算
+        int min = automaton.step(depth + 1, labels.get(child));
+        if (min > automaton.maxDistance()) {
+            return;
+        }
+        int distance = automaton.distance(depth + 1);
+        if (distance <= automaton.maxDistance() && terminals.get(child)) {
+            consumer.accept(exact(child), distance);
+        }
+        fuzzyFind(child, depth + 1, min, automaton, consumer);
+    }
+    
+    /**
+     * 模糊查找回调
+     */
+    @FunctionalInterface
+    interface FuzzyConsumer {
+        /**
+         * @param ordinals 关键词的记录区间
+         * @param distance 关键词与查询串的编辑距离
+         */
+        void accept(OrdinalRange ordinals, int distance);
+    }
+    
+    /**
+     * 节点数量
+     */
+    int size() {
+        return labels.limit();
+    }
+    
+    /**
+     * 在有序的子节点区间内二分查找字符
+     */
+    private int child(int node, char c) {
+        int lo = firstChild.get(node);
+        int hi = firstChild.get(node + 1) - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels.get(mid);
+            if (label < c) {
+                lo = mid + 1;
+            } else if (label > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
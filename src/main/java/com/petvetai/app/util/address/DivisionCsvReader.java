@@ -0,0 +1,84 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行政区划CSV读取器
+ * 格式：编码,省,市,区,街道；跳过空行和 # 开头的注释行
+ *
+ * @author PetVetAI
+ */
+@Slf4j
+public final class DivisionCsvReader {
+    
+    private DivisionCsvReader() {
+    }
+    
+    /**
+     * 读取全部行政区划，格式不正确的行记录警告后跳过
+     * 同一次读取中相同的层级名称（如"浙江省"）共享同一个 String 实例
+     */
+    public static List<AdministrativeDivision> read(InputStream is) throws IOException {
+        List<AdministrativeDivision> divisions = new ArrayList<>();
+        Map<String, String> names = new HashMap<>();
+        
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue; // 跳过空行和注释
+                }
+                
+                AdministrativeDivision division = parseLine(line, names);
+                if (division != null) {
+                    divisions.add(division);
+                }
+            }
+        }
+        return divisions;
+    }
+    
+    /**
+     * 解析CSV行
+     * 格式：编码,省,市,区,街道
+     */
+    public static AdministrativeDivision parseLine(String line) {
+        return parseLine(line, new HashMap<>());
+    }
+    
+    /**
+     * 解析CSV行，层级名称从名称池中取已有实例
+     */
+    private static AdministrativeDivision parseLine(String line, Map<String, String> names) {
+        String[] parts = line.split(",");
+        if (parts.length < 5) {
+            log.warn("CSV行格式不正确: {}", line);
+            return null;
+        }
+        
+        return new AdministrativeDivision(
+                parts[0].trim(),
+                pooled(names, parts[1].trim()),
+                pooled(names, parts[2].trim()),
+                pooled(names, parts[3].trim()),
+                pooled(names, parts[4].trim())
+        );
+    }
+    
+    private static String pooled(Map<String, String> names, String name) {
+        String existing = names.putIfAbsent(name, name);
+        return existing != null ? existing : name;
+    }
+}
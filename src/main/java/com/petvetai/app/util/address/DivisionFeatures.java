@@ -0,0 +1,86 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.util.PinyinUtil;
+
+/**
+ * 行政区划打分特征
+ * 行政区划第一次参与打分时生成的只读记录：完整地址、各层级名称、层级长度和层级的逐字读音网格，
+ * 由索引放在有界的缓存中复用（见 {@link AddressIndex#getFeatures}）。
+ * 打分时直接读取这些字段，不再调用 {@link AdministrativeDivision#getFullAddress()} 拼接字符串、
+ * {@link AdministrativeDivision#getLevels()} 新建数组，也不再为每个候选重新查询读音。
+ * 层级名称和读音网格取自行政区划表的名称池，同名层级的所有记录共享同一个实例
+ *
+ * @author PetVetAI
+ */
+final class DivisionFeatures {
+    
+    /**
+     * 行政区划序号，缓存槽位按序号取模共享，读取时用它核对
+     */
+    private final int ordinal;
+    
+    private final String fullAddress;
+    
+    /**
+     * 层级名称 [省, 市, 区, 街道]
+     */
+    private final String[] levels;
+    
+    /**
+     * 层级名称长度，层级为 null 时为 -1
+     */
+    private final int[] levelLengths;
+    
+    /**
+     * 层级名称的读音网格（见 {@link PinyinUtil#getReadings}），层级为 null 时为 null
+     */
+    private final String[][][] levelReadings;
+    
+    /**
+     * @param ordinal       行政区划序号
+     * @param levels        层级名称，与 {@link AdministrativeDivision#getLevels()} 顺序相同
+     * @param levelReadings 层级名称的读音网格，层级为 null 时为 null
+     */
+    DivisionFeatures(int ordinal, String[] levels, String[][][] levelReadings) {
+        this.ordinal = ordinal;
+        // 与 AdministrativeDivision#getFullAddress 的拼接方式相同
+        this.fullAddress = levels[0] + levels[1] + levels[2] + levels[3];
+        this.levels = levels;
+        this.levelLengths = new int[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            levelLengths[i] = levels[i] != null ? levels[i].length() : -1;
+        }
+        this.levelReadings = levelReadings;
+    }
+    
+    int ordinal() {
+        return ordinal;
+    }
+    
+    String fullAddress() {
+        return fullAddress;
+    }
+    
+    int levelCount() {
+        return levels.length;
+    }
+    
+    String level(int i) {
+        return levels[i];
+    }
+    
+    int levelLength(int i) {
+        return levelLengths[i];
+    }
+    
+    /**
+     * 层级名称是否与给定读音网格同音，与 {@link PinyinUtil#isHomophone} 语义一致
+     */
+    boolean isHomophone(int i, String[][] readings) {
+        if (levelReadings[i] == null || readings == null) {
+            return false;
+        }
+        return PinyinUtil.isHomophone(levelReadings[i], readings);
+    }
+}
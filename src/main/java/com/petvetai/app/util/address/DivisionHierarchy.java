@@ -0,0 +1,253 @@
+package com.petvetai.app.util.address;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 行政区划层级树
+ * 与 {@link AddressIndex} 一起构建的省 -> 市 -> 区树，每个节点记录父节点、子节点和子树内全部行政区划的序号位图，
+ * 街道是区节点下的行政区划本身；缺失的层级直接跳过（如"香港特别行政区"下直接是区）。
+ * 节点由行政区划表的名称编号构建，不复制名称字符串。
+ * 输入中已确定省份时只在该省（及其下已确定的市）的子树内匹配；
+ * 缺少省份时通过市名 -> 市节点索引找到各省的同名市，只在这些市的子树内匹配
+ *
+ * @author PetVetAI
+ */
+final class DivisionHierarchy {
+    
+    /**
+     * 根节点编号，根节点没有名称和位图
+     */
+    static final int ROOT = 0;
+    
+    /**
+     * 建树的层级数：省、市、区
+     */
+    private static final int TREE_LEVELS = 3;
+    
+    private static final int[] NO_NODES = new int[0];
+    
+    private final DivisionTable divisions;
+    
+    /**
+     * 节点编号 -> 父节点编号，根节点为 -1
+     */
+    private final int[] parents;
+    
+    /**
+     * 节点编号 -> 层级（{@link LevelAutomaton#PROVINCE} 等），根节点为 -1
+     */
+    private final int[] levels;
+    
+    /**
+     * 节点编号 -> 名称编号（见 {@link DivisionTable#name}），根节点为 -1
+     */
+    private final int[] nameIds;
+    
+    /**
+     * 节点的子节点为 children[childOffsets[node]..childOffsets[node + 1])，按编号升序
+     */
+    private final int[] childOffsets;
+    
+    private final int[] children;
+    
+    /**
+     * 节点编号 -> 子树内全部行政区划序号，根节点为 null
+     */
+    private final ImmutableRoaringBitmap[] subtrees;
+    
+    /**
+     * 省名 -> 省节点
+     */
+    private final Map<String, int[]> provinces;
+    
+    /**
+     * 市名 -> 各省的同名市节点
+     */
+    private final Map<String, int[]> cities;
+    
+    private DivisionHierarchy(DivisionTable divisions, int[] parents, int[] levels, int[] nameIds,
+                              ImmutableRoaringBitmap[] subtrees) {
+        this.divisions = divisions;
+        this.parents = parents;
+        this.levels = levels;
+        this.nameIds = nameIds;
+        this.subtrees = subtrees;
+        
+        // 父节点编号总是小于子节点，按父节点计数后得到升序的子节点数组
+        this.childOffsets = new int[parents.length + 1];
+        for (int node = 1; node < parents.length; node++) {
+            childOffsets[parents[node] + 1]++;
+        }
+        for (int node = 0; node < parents.length; node++) {
+            childOffsets[node + 1] += childOffsets[node];
+        }
+        this.children = new int[Math.max(0, parents.length - 1)];
+        int[] next = Arrays.copyOf(childOffsets, parents.length);
+        for (int node = 1; node < parents.length; node++) {
+            children[next[parents[node]]++] = node;
+        }
+        
+        this.provinces = nodesByName(LevelAutomaton.PROVINCE);
+        this.cities = nodesByName(LevelAutomaton.CITY);
+    }
+    
+    /**
+     * 由行政区划表构建，节点按首次出现的顺序编号
+     */
+    static DivisionHierarchy build(DivisionTable divisions) {
+        Map<Long, Integer> nodeIds = new HashMap<>();
+        List<int[]> nodes = new ArrayList<>();
+        nodes.add(new int[]{-1, -1, -1});
+        List<MutableRoaringBitmap> subtrees = new ArrayList<>();
+        subtrees.add(null);
+        
+        for (int ordinal = 0; ordinal < divisions.size(); ordinal++) {
+            int node = ROOT;
+            for (int level = 0; level < TREE_LEVELS; level++) {
+                int nameId = divisions.nameId(ordinal, level);
+                if (nameId < 0) {
+                    continue;
+                }
+                int parent = node;
+                int nodeLevel = level;
+                node = nodeIds.computeIfAbsent(((long) parent << 32) | nameId, key -> {
+                    nodes.add(new int[]{parent, nodeLevel, nameId});
+                    subtrees.add(new MutableRoaringBitmap());
+                    return nodes.size() - 1;
+                });
+                subtrees.get(node).add(ordinal);
+            }
+        }
+        
+        int[] parents = new int[nodes.size()];
+        int[] levels = new int[nodes.size()];
+        int[] nameIds = new int[nodes.size()];
+        ImmutableRoaringBitmap[] bitmaps = new ImmutableRoaringBitmap[nodes.size()];
+        for (int node = 0; node < nodes.size(); node++) {
+            parents[node] = nodes.get(node)[0];
+            levels[node] = nodes.get(node)[1];
+            nameIds[node] = nodes.get(node)[2];
+            MutableRoaringBitmap subtree = subtrees.get(node);
+            if (subtree != null) {
+                // 按编码顺序加载时同一子树的序号连续，游程编码后每个节点只占几个字节
+                subtree.runOptimize();
+            }
+            bitmaps[node] = subtree;
+        }
+        return new DivisionHierarchy(divisions, parents, levels, nameIds, bitmaps);
+    }
+    
+    private Map<String, int[]> nodesByName(int level) {
+        Map<String, int[]> index = new HashMap<>();
+        for (int node = 1; node < parents.length; node++) {
+            if (levels[node] == level) {
+                index.merge(name(node), new int[]{node}, DivisionHierarchy::concat);
+            }
+        }
+        return index;
+    }
+    
+    private static int[] concat(int[] a, int[] b) {
+        int[] result = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, result, a.length, b.length);
+        return result;
+    }
+    
+    /**
+     * 节点数（含根节点）
+     */
+    int size() {
+        return parents.length;
+    }
+    
+    int parent(int node) {
+        return parents[node];
+    }
+    
+    int level(int node) {
+        return levels[node];
+    }
+    
+    String name(int node) {
+        return divisions.name(nameIds[node]);
+    }
+    
+    /**
+     * 子节点编号，按编号升序
+     */
+    int[] children(int node) {
+        return Arrays.copyOfRange(children, childOffsets[node], childOffsets[node + 1]);
+    }
+    
+    /**
+     * 子树内全部行政区划序号
+     */
+    ImmutableRoaringBitmap subtree(int node) {
+        return subtrees[node];
+    }
+    
+    /**
+     * 名称为 name 的省节点
+     */
+    int[] provinces(String name) {
+        return provinces.getOrDefault(name, NO_NODES);
+    }
+    
+    /**
+     * 名称为 name 的市节点，可能属于不同省份
+     */
+    int[] cities(String name) {
+        return cities.getOrDefault(name, NO_NODES);
+    }
+    
+    /**
+     * 输入层级确定的匹配范围
+     * 省份是已知省名时取该省子树，市名同时是这些省下的已知市时再下降到市的子树；
+     * 市名是其他省的已知市（省市矛盾）时省份不可信，不约束。
+     * 缺少省份（或省份不是已知省名）但市名已知时，取全部同名市的子树
+     *
+     * @param inputLevels 输入地址层级 [省, 市, 区, 街道]
+     * @return 范围内的行政区划序号，省和市都无法确定时返回 null
+     */
+    MutableRoaringBitmap scope(String[] inputLevels) {
+        int[] nodes = inputLevels[0] != null ? provinces(inputLevels[0]) : NO_NODES;
+        if (nodes.length > 0 && inputLevels[1] != null) {
+            int[] cityNodes = childrenNamed(nodes, LevelAutomaton.CITY, inputLevels[1]);
+            if (cityNodes.length > 0) {
+                nodes = cityNodes;
+            } else if (cities(inputLevels[1]).length > 0) {
+                return null;
+            }
+        } else if (nodes.length == 0 && inputLevels[1] != null) {
+            nodes = cities(inputLevels[1]);
+        }
+        if (nodes.length == 0) {
+            return null;
+        }
+        MutableRoaringBitmap scope = new MutableRoaringBitmap();
+        for (int node : nodes) {
+            scope.or(subtrees[node]);
+        }
+        return scope;
+    }
+    
+    private int[] childrenNamed(int[] parentNodes, int level, String name) {
+        int[] matched = NO_NODES;
+        for (int parent : parentNodes) {
+            for (int i = childOffsets[parent]; i < childOffsets[parent + 1]; i++) {
+                int child = children[i];
+                if (levels[child] == level && name.equals(name(child))) {
+                    matched = concat(matched, new int[]{child});
+                }
+            }
+        }
+        return matched;
+    }
+}
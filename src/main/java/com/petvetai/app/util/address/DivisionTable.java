@@ -0,0 +1,262 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 堆外行政区划表
+ * 行政区划不以 {@link AdministrativeDivision} 对象常驻堆内，而是存放在直接缓冲区中（从快照加载时是内存映射文件的视图）：
+ * 每个序号占 5 个定宽槽位，第一个是编码在 UTF-8 字符串区中的字节偏移，其余四个是省、市、区、街道的名称编号，-1 表示 null。
+ * 同一名称（如"浙江省"）在全国数据中重复数百万次，名称池为每个不同的名称分配一个编号，
+ * 字符串区中只存一份，堆内也只保留一个 String 实例，读取层级名称不需要解码也不产生新对象。
+ * 字符串区中每个字符串前有 2 字节长度。
+ * 编码 -> 序号是同样存放在缓冲区中的开放寻址哈希表，查找时直接比较 UTF-8 字节。
+ * 编码按需解码，只有交给调用方时才生成行政区划对象，GC 不再需要遍历数百万个常驻的小对象
+ *
+ * @author PetVetAI
+ */
+final class DivisionTable {
+    
+    static final int FIELDS = 5;
+    
+    /**
+     * 层级数：省、市、区、街道
+     */
+    static final int LEVELS = FIELDS - 1;
+    
+    private static final int CODE = 0;
+    
+    /**
+     * 字符串长度前缀的字节数
+     */
+    private static final int LENGTH_BYTES = Short.BYTES;
+    
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    
+    /**
+     * 序号 * 5 -> 编码的字符串区偏移，序号 * 5 + 1 + 层级 -> 名称编号，-1 表示 null
+     */
+    private final IntBuffer slots;
+    
+    /**
+     * 名称编号 -> 字符串区偏移
+     */
+    private final IntBuffer nameOffsets;
+    
+    /**
+     * 名称池：名称编号 -> 名称，每个不同的名称只有一个实例
+     */
+    private final String[] names;
+    
+    /**
+     * UTF-8 字符串区：2 字节无符号长度 + 字节
+     */
+    private final ByteBuffer arena;
+    
+    /**
+     * 编码哈希表：容量为 2 的幂，线性探测，值为序号，-1 表示空位
+     */
+    private final IntBuffer codeTable;
+    
+    private DivisionTable(IntBuffer slots, IntBuffer nameOffsets, ByteBuffer arena, IntBuffer codeTable) {
+        this.slots = slots;
+        this.nameOffsets = nameOffsets;
+        this.arena = arena;
+        this.codeTable = codeTable;
+        this.names = new String[nameOffsets.limit()];
+        for (int id = 0; id < names.length; id++) {
+            names[id] = decode(nameOffsets.get(id));
+        }
+    }
+    
+    /**
+     * 由行政区划列表构建，编码必须唯一；名称编号按首次出现的顺序分配
+     */
+    static DivisionTable build(List<AdministrativeDivision> divisions) {
+        int[] slots = new int[divisions.size() * FIELDS];
+        Map<String, Integer> offsets = new HashMap<>();
+        Map<String, Integer> nameIds = new HashMap<>();
+        List<Integer> nameOffsets = new ArrayList<>();
+        ByteArrayOutputStream arena = new ByteArrayOutputStream();
+        for (int ordinal = 0; ordinal < divisions.size(); ordinal++) {
+            AdministrativeDivision division = divisions.get(ordinal);
+            slots[ordinal * FIELDS] = offsets.computeIfAbsent(division.getCode(), s -> append(arena, s));
+            String[] levels = division.getLevels();
+            for (int level = 0; level < LEVELS; level++) {
+                slots[ordinal * FIELDS + 1 + level] = levels[level] == null ? -1
+                        : nameIds.computeIfAbsent(levels[level], name -> {
+                            nameOffsets.add(offsets.computeIfAbsent(name, s -> append(arena, s)));
+                            return nameOffsets.size() - 1;
+                        });
+            }
+        }
+        ByteBuffer arenaBuffer = ByteBuffer.allocateDirect(arena.size());
+        arenaBuffer.put(arena.toByteArray()).flip();
+        
+        int[] codeTable = new int[tableCapacity(divisions.size())];
+        Arrays.fill(codeTable, -1);
+        for (int ordinal = 0; ordinal < divisions.size(); ordinal++) {
+            int mask = codeTable.length - 1;
+            int slot = hash(divisions.get(ordinal).getCode().getBytes(StandardCharsets.UTF_8)) & mask;
+            while (codeTable[slot] >= 0) {
+                slot = (slot + 1) & mask;
+            }
+            codeTable[slot] = ordinal;
+        }
+        return new DivisionTable(directInts(slots),
+                directInts(nameOffsets.stream().mapToInt(Integer::intValue).toArray()), arenaBuffer,
+                directInts(codeTable));
+    }
+    
+    private static int append(ByteArrayOutputStream arena, String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IllegalArgumentException("行政区划字段过长: " + s);
+        }
+        int offset = arena.size();
+        arena.write(bytes.length >>> 8);
+        arena.write(bytes.length);
+        arena.write(bytes, 0, bytes.length);
+        return offset;
+    }
+    
+    private static IntBuffer directInts(int[] values) {
+        IntBuffer buffer = ByteBuffer.allocateDirect(values.length * Integer.BYTES).asIntBuffer();
+        buffer.put(values).flip();
+        return buffer;
+    }
+    
+    /**
+     * 负载因子不超过 1/2
+     */
+    private static int tableCapacity(int size) {
+        return Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+    }
+    
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+    
+    /**
+     * 写入快照：行政区划数、名称数、字符串区字节数、哈希表容量，随后依次为槽位、名称偏移、字符串区和哈希表
+     */
+    void writeTo(SnapshotOutput out) throws IOException {
+        out.writeInt(size());
+        out.writeInt(nameCount());
+        out.writeInt(arena.limit());
+        out.writeInt(codeTable.limit());
+        out.writeInts(slots);
+        out.writeInts(nameOffsets);
+        out.writeBytes(arena);
+        out.writeInts(codeTable);
+    }
+    
+    /**
+     * 从快照读取，各段数据都直接引用快照缓冲区，不做复制；只有名称池解码到堆内
+     */
+    static DivisionTable readFrom(SnapshotInput in) {
+        int size = in.readInt();
+        int nameCount = in.readInt();
+        int arenaLength = in.readInt();
+        int tableCapacity = in.readInt();
+        IntBuffer slots = in.ints(size * FIELDS);
+        IntBuffer nameOffsets = in.ints(nameCount);
+        ByteBuffer arena = in.bytes(arenaLength);
+        IntBuffer codeTable = in.ints(tableCapacity);
+        return new DivisionTable(slots, nameOffsets, arena, codeTable);
+    }
+    
+    /**
+     * 行政区划数量
+     */
+    int size() {
+        return slots.limit() / FIELDS;
+    }
+    
+    /**
+     * 名称池中的名称数
+     */
+    int nameCount() {
+        return names.length;
+    }
+    
+    /**
+     * 层级名称的编号，level 为 0（省）到 3（街道），层级为 null 时返回 -1
+     */
+    int nameId(int ordinal, int level) {
+        return slots.get(ordinal * FIELDS + 1 + level);
+    }
+    
+    /**
+     * 名称池中的名称
+     */
+    String name(int id) {
+        return names[id];
+    }
+    
+    /**
+     * 行政区划的一个字段，field 为 0（编码）到 4（街道）；编码每次解码，层级名称直接取自名称池
+     */
+    String field(int ordinal, int field) {
+        if (field == CODE) {
+            return decode(slots.get(ordinal * FIELDS));
+        }
+        int id = nameId(ordinal, field - 1);
+        return id < 0 ? null : names[id];
+    }
+    
+    private String decode(int offset) {
+        byte[] bytes = new byte[Short.toUnsignedInt(arena.getShort(offset))];
+        arena.get(offset + LENGTH_BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * 生成新的行政区划对象，调用方可以随意修改
+     */
+    AdministrativeDivision get(int ordinal) {
+        return new AdministrativeDivision(field(ordinal, CODE), field(ordinal, 1), field(ordinal, 2),
+                field(ordinal, 3), field(ordinal, 4));
+    }
+    
+    /**
+     * 编码对应的序号，不存在时返回 -1
+     */
+    int ordinalOf(String code) {
+        byte[] key = code.getBytes(StandardCharsets.UTF_8);
+        int mask = codeTable.limit() - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int ordinal = codeTable.get(slot);
+            if (ordinal < 0) {
+                return -1;
+            }
+            if (codeEquals(ordinal, key)) {
+                return ordinal;
+            }
+        }
+    }
+    
+    private boolean codeEquals(int ordinal, byte[] key) {
+        int offset = slots.get(ordinal * FIELDS + CODE);
+        if (Short.toUnsignedInt(arena.getShort(offset)) != key.length) {
+            return false;
+        }
+        for (int i = 0; i < key.length; i++) {
+            if (arena.get(offset + LENGTH_BYTES + i) != key[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
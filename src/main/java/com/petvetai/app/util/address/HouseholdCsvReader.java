@@ -0,0 +1,77 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.HouseholdAddress;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 户级地址CSV读取器
+ * 格式：户编码,街道编码,道路,门牌号,楼栋,单元,室；楼栋、单元、室可以为空，跳过空行和 # 开头的注释行
+ *
+ * @author PetVetAI
+ */
+@Slf4j
+public final class HouseholdCsvReader {
+    
+    private static final int FIELDS = 7;
+    
+    private HouseholdCsvReader() {
+    }
+    
+    /**
+     * 读取全部户级地址，格式不正确的行记录警告后跳过
+     */
+    public static List<HouseholdAddress> read(InputStream is) throws IOException {
+        List<HouseholdAddress> households = new ArrayList<>();
+        
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(is, StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue; // 跳过空行和注释
+                }
+                
+                HouseholdAddress household = parseLine(line);
+                if (household != null) {
+                    households.add(household);
+                }
+            }
+        }
+        return households;
+    }
+    
+    /**
+     * 解析CSV行
+     * 格式：户编码,街道编码,道路,门牌号,楼栋,单元,室
+     */
+    public static HouseholdAddress parseLine(String line) {
+        String[] parts = line.split(",", -1);
+        if (parts.length < FIELDS || parts[0].isBlank() || parts[1].isBlank()) {
+            log.warn("户级地址CSV行格式不正确: {}", line);
+            return null;
+        }
+        
+        return new HouseholdAddress(
+                parts[0].trim(),
+                parts[1].trim(),
+                emptyToNull(parts[2]),
+                emptyToNull(parts[3]),
+                emptyToNull(parts[4]),
+                emptyToNull(parts[5]),
+                emptyToNull(parts[6])
+        );
+    }
+    
+    private static String emptyToNull(String field) {
+        String trimmed = field.trim();
+        return trimmed.isEmpty() ? null : trimmed;
+    }
+}
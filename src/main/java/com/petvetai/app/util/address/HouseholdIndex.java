@@ -0,0 +1,269 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.HouseholdAddress;
+import com.petvetai.app.domain.address.MatchResult;
+import org.roaringbitmap.IntIterator;
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 户级地址索引
+ * 行政区划匹配到街道之后的第五层：数据集中的户按所属街道分组，每个街道一份倒排表，
+ * 道路、门牌号、楼栋、单元、室的标准化值（见 {@link HouseholdTokenizer#normalize}）-> 户序号位图。
+ * 同一街道的户序号连续，位图经游程编码后很小；标准化值在名称池中只存一份，户记录只保存名称编号。
+ * 查找时只在匹配到的街道内求交，不会跨街道召回
+ *
+ * @author PetVetAI
+ */
+public final class HouseholdIndex {
+    
+    // 每个线程复用一个切分器，避免每次请求分配缓冲区
+    private static final ThreadLocal<HouseholdTokenizer> TOKENIZER = ThreadLocal.withInitial(HouseholdTokenizer::new);
+    
+    private static final int TOKEN_COUNT = HouseholdTokenizer.TOKEN_COUNT;
+    
+    /**
+     * 户序号 -> 户编码
+     */
+    private final String[] codes;
+    
+    /**
+     * 户序号 -> 所属街道的行政区划编码
+     */
+    private final String[] divisionCodes;
+    
+    /**
+     * 户序号 * 5 + 层级 -> 名称编号，-1 表示 null
+     */
+    private final int[] tokenIds;
+    
+    /**
+     * 名称池：名称编号 -> 标准化值
+     */
+    private final String[] names;
+    
+    /**
+     * 层级 + 标准化值 -> 名称编号
+     */
+    private final Map<String, Integer> nameIds;
+    
+    /**
+     * 街道编码 -> 街道倒排表
+     */
+    private final Map<String, StreetPostings> streets;
+    
+    private HouseholdIndex(String[] codes, String[] divisionCodes, int[] tokenIds, String[] names,
+                           Map<String, Integer> nameIds, Map<String, StreetPostings> streets) {
+        this.codes = codes;
+        this.divisionCodes = divisionCodes;
+        this.tokenIds = tokenIds;
+        this.names = names;
+        this.nameIds = nameIds;
+        this.streets = streets;
+    }
+    
+    /**
+     * 由户级地址列表构建，所属街道编码为空的户跳过
+     */
+    public static HouseholdIndex build(List<HouseholdAddress> households) {
+        // 按街道编码稳定排序，同一街道的户序号连续
+        List<HouseholdAddress> sorted = new ArrayList<>(households.size());
+        for (HouseholdAddress household : households) {
+            if (household.getDivisionCode() != null && !household.getDivisionCode().isEmpty()) {
+                sorted.add(household);
+            }
+        }
+        sorted.sort(Comparator.comparing(HouseholdAddress::getDivisionCode));
+        
+        HouseholdTokenizer tokenizer = new HouseholdTokenizer();
+        String[] codes = new String[sorted.size()];
+        String[] divisionCodes = new String[sorted.size()];
+        int[] tokenIds = new int[sorted.size() * TOKEN_COUNT];
+        List<String> names = new ArrayList<>();
+        Map<String, Integer> nameIds = new HashMap<>();
+        Map<String, StreetPostings> streets = new HashMap<>();
+        
+        int streetStart = 0;
+        for (int ordinal = 0; ordinal < sorted.size(); ordinal++) {
+            HouseholdAddress household = sorted.get(ordinal);
+            codes[ordinal] = household.getCode();
+            // 同一街道共享编码实例
+            divisionCodes[ordinal] = ordinal > streetStart ? divisionCodes[ordinal - 1] : household.getDivisionCode();
+            String[] tokens = household.getTokens();
+            for (int level = 0; level < TOKEN_COUNT; level++) {
+                String value = tokenizer.normalize(level, tokens[level]);
+                tokenIds[ordinal * TOKEN_COUNT + level] = value == null ? -1
+                        : nameIds.computeIfAbsent(key(level, value), key -> {
+                            names.add(value);
+                            return names.size() - 1;
+                        });
+            }
+            
+            boolean lastOfStreet = ordinal + 1 == sorted.size()
+                    || !sorted.get(ordinal + 1).getDivisionCode().equals(household.getDivisionCode());
+            if (lastOfStreet) {
+                streets.put(divisionCodes[ordinal], StreetPostings.build(tokenIds, streetStart, ordinal + 1));
+                streetStart = ordinal + 1;
+            }
+        }
+        return new HouseholdIndex(codes, divisionCodes, tokenIds, names.toArray(new String[0]), nameIds, streets);
+    }
+    
+    private static String key(int level, String value) {
+        return (char) ('0' + level) + value;
+    }
+    
+    /**
+     * 户数
+     */
+    public int size() {
+        return codes.length;
+    }
+    
+    /**
+     * 有户级数据的街道数
+     */
+    public int streetCount() {
+        return streets.size();
+    }
+    
+    /**
+     * 行政区划匹配之后下降到户级
+     * 只有匹配结果确定到街道（有编码、不是异常地址、街道层级不为空）且该街道有户级数据时才切分输入并查找
+     *
+     * @param division 行政区划匹配结果
+     * @param input    原始输入地址
+     * @return 唯一对应的户，没有时返回 null
+     */
+    public HouseholdAddress match(MatchResult division, String input) {
+        if (division == null || division.getCode() == null || division.isAbnormal()
+                || division.getDivision() == null || input == null) {
+            return null;
+        }
+        AdministrativeDivision resolved = division.getDivision();
+        StreetPostings street = resolved.getStreet() != null ? streets.get(division.getCode()) : null;
+        if (street == null) {
+            return null;
+        }
+        int ordinal = lookup(street, TOKENIZER.get().tokenize(input, resolved.getStreet()));
+        return ordinal < 0 ? null : get(ordinal);
+    }
+    
+    /**
+     * 在街道内查找户
+     *
+     * @param divisionCode 街道的行政区划编码
+     * @param tokens       切分结果 [道路, 门牌号, 楼栋, 单元, 室]
+     * @return 唯一对应的户，没有时返回 null
+     */
+    HouseholdAddress lookup(String divisionCode, String[] tokens) {
+        StreetPostings street = streets.get(divisionCode);
+        int ordinal = street != null ? lookup(street, tokens) : -1;
+        return ordinal < 0 ? null : get(ordinal);
+    }
+    
+    /**
+     * 两个最短的倒排列表求交得到候选，再逐个核对户记录：输入的每个层级都相同，且户没有输入之外的层级
+     * （只给出楼栋时不会匹配到其中某一户）。数据集中有重复的户时返回序号最小的
+     */
+    private int lookup(StreetPostings street, String[] tokens) {
+        int[] ids = new int[TOKEN_COUNT];
+        ImmutableRoaringBitmap[] lists = new ImmutableRoaringBitmap[TOKEN_COUNT];
+        int count = 0;
+        for (int level = 0; level < TOKEN_COUNT; level++) {
+            ids[level] = -1;
+            if (tokens[level] == null) {
+                continue;
+            }
+            Integer id = nameIds.get(key(level, tokens[level]));
+            ImmutableRoaringBitmap postings = id != null ? street.postings(id) : null;
+            if (postings == null) {
+                return -1;
+            }
+            ids[level] = id;
+            lists[count++] = postings;
+        }
+        if (count == 0) {
+            return -1;
+        }
+        
+        Arrays.sort(lists, 0, count, Comparator.comparingInt(ImmutableRoaringBitmap::getCardinality));
+        ImmutableRoaringBitmap candidates = count > 1 ? ImmutableRoaringBitmap.and(lists[0], lists[1]) : lists[0];
+        IntIterator it = candidates.getIntIterator();
+        while (it.hasNext()) {
+            int ordinal = it.next();
+            if (Arrays.equals(tokenIds, ordinal * TOKEN_COUNT, (ordinal + 1) * TOKEN_COUNT, ids, 0, TOKEN_COUNT)) {
+                return ordinal;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * 生成新的户级地址对象，字段为标准化后的值
+     */
+    HouseholdAddress get(int ordinal) {
+        String[] tokens = new String[TOKEN_COUNT];
+        for (int level = 0; level < TOKEN_COUNT; level++) {
+            int id = tokenIds[ordinal * TOKEN_COUNT + level];
+            tokens[level] = id < 0 ? null : names[id];
+        }
+        return new HouseholdAddress(codes[ordinal], divisionCodes[ordinal], tokens[0], tokens[1], tokens[2],
+                tokens[3], tokens[4]);
+    }
+    
+    /**
+     * 单个街道的倒排表：名称编号升序，二分查找定位位图
+     */
+    private static final class StreetPostings {
+        
+        private final int[] ids;
+        private final ImmutableRoaringBitmap[] postings;
+        
+        private StreetPostings(int[] ids, ImmutableRoaringBitmap[] postings) {
+            this.ids = ids;
+            this.postings = postings;
+        }
+        
+        /**
+         * 由 [from, to) 范围内户的名称编号构建
+         */
+        static StreetPostings build(int[] tokenIds, int from, int to) {
+            Map<Integer, MutableRoaringBitmap> lists = new TreeMap<>();
+            for (int ordinal = from; ordinal < to; ordinal++) {
+                for (int level = 0; level < TOKEN_COUNT; level++) {
+                    int id = tokenIds[ordinal * TOKEN_COUNT + level];
+                    if (id >= 0) {
+                        lists.computeIfAbsent(id, k -> new MutableRoaringBitmap()).add(ordinal);
+                    }
+                }
+            }
+            int[] ids = new int[lists.size()];
+            ImmutableRoaringBitmap[] postings = new ImmutableRoaringBitmap[lists.size()];
+            int i = 0;
+            for (Map.Entry<Integer, MutableRoaringBitmap> entry : lists.entrySet()) {
+                entry.getValue().runOptimize();
+                ids[i] = entry.getKey();
+                postings[i++] = entry.getValue();
+            }
+            return new StreetPostings(ids, postings);
+        }
+        
+        /**
+         * 名称编号对应的位图，该街道没有时返回 null
+         */
+        ImmutableRoaringBitmap postings(int id) {
+            int i = Arrays.binarySearch(ids, id);
+            return i >= 0 ? postings[i] : null;
+        }
+    }
+}
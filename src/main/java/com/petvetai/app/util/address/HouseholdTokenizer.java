@@ -0,0 +1,376 @@
+package com.petvetai.app.util.address;
+
+import java.util.Arrays;
+
+/**
+ * 户级地址切分器
+ * 对街道之后的部分做一次字符级扫描，切出道路、门牌号、楼栋、单元和室：
+ * 数字（含全角数字和紧跟标识的中文数字）连续段按其后的标识（号、幢、单元、室等）确定层级，
+ * 没有标识的数字段（如"3-2-501"）依次归入上一个层级的下一级；数字段之前以道路后缀结尾的文字是道路。
+ * 已确定的街道名称出现在输入中时从其后开始扫描，否则道路前的区县、街道名称按后缀剥离。
+ * 切分器持有可复用的缓冲区，非线程安全，应每个线程持有一个实例
+ *
+ * @author PetVetAI
+ */
+final class HouseholdTokenizer {
+    
+    static final int ROAD = 0;
+    static final int NUMBER = 1;
+    static final int BUILDING = 2;
+    static final int UNIT = 3;
+    static final int ROOM = 4;
+    
+    static final int TOKEN_COUNT = 5;
+    
+    /**
+     * 分隔符统一替换成的边界字符，数字段在边界处结束
+     */
+    private static final char BOUNDARY = '-';
+    
+    private static final String[] ROAD_SUFFIXES = {"路", "街", "道", "巷", "胡同"};
+    
+    /**
+     * 道路前需要剥离的区县、街道后缀；省、市后缀（如"州"）常出现在道路名称中，不剥离
+     */
+    private static final String[][] ADMIN_SUFFIXES = {
+            LevelAutomaton.SUFFIX_KEYWORDS[LevelAutomaton.DISTRICT],
+            LevelAutomaton.SUFFIX_KEYWORDS[LevelAutomaton.STREET]
+    };
+    
+    /**
+     * 各层级数字段之后的标识，下标为层级，同一位置先匹配较长的标识
+     */
+    private static final String[][] MARKERS = {
+            {},
+            {"号"},
+            {"号楼", "幢", "栋", "座"},
+            {"单元"},
+            {"室", "户"}
+    };
+    
+    /**
+     * 楼层标识，楼层不单独作为层级（室号已包含楼层）
+     */
+    private static final String[] FLOOR_MARKERS = {"楼", "层"};
+    
+    /**
+     * 里弄编号，并入道路（如"长乐路123弄"）
+     */
+    private static final String LANE_MARKER = "弄";
+    
+    private static final String CHINESE_DIGITS = "零〇一二三四五六七八九";
+    
+    private char[] buffer = new char[64];
+    private int length;
+    
+    private final String[] tokens = new String[TOKEN_COUNT];
+    
+    /**
+     * 切分户级地址
+     *
+     * @param input  输入地址
+     * @param street 已确定的街道名称，为 null 时扫描整个输入
+     * @return [道路, 门牌号, 楼栋, 单元, 室]，未识别的层级为 null；返回的数组在下一次切分时复用
+     */
+    String[] tokenize(String input, String street) {
+        Arrays.fill(tokens, null);
+        fill(input);
+        int start = street != null ? lastEndOf(street) : 0;
+        
+        int segmentStart = start;
+        int lastLevel = ROAD;
+        int i = start;
+        while (i < length) {
+            int runEnd = runEnd(i);
+            if (runEnd < 0) {
+                i++;
+                continue;
+            }
+            
+            // 数字段之前的文字
+            int segmentEnd = i;
+            while (segmentEnd > segmentStart && buffer[segmentEnd - 1] == BOUNDARY) {
+                segmentEnd--;
+            }
+            if (tokens[NUMBER] == null && endsWithAny(segmentStart, segmentEnd, ROAD_SUFFIXES)) {
+                tokens[ROAD] = stripAdmin(segmentStart, segmentEnd);
+            }
+            
+            String value = runValue(i, runEnd);
+            int level = -1;
+            int next = runEnd;
+            int markerEnd;
+            if ((markerEnd = matchAny(runEnd, FLOOR_MARKERS)) > 0) {
+                next = markerEnd;
+            } else if ((markerEnd = matchAt(runEnd, LANE_MARKER)) > 0) {
+                tokens[ROAD] = (tokens[ROAD] != null ? tokens[ROAD] : "") + value + LANE_MARKER;
+                next = markerEnd;
+            } else {
+                // 从室到门牌号依次匹配，"号楼"先于"号"
+                for (int marked = ROOM; marked > ROAD && level < 0; marked--) {
+                    if ((markerEnd = matchAny(runEnd, MARKERS[marked])) > 0) {
+                        level = marked;
+                        next = markerEnd;
+                    }
+                }
+                // 没有标识或该层级已出现（如"969号3号"）时归入上一个层级的下一级
+                if (level < 0 || tokens[level] != null) {
+                    level = lastLevel + 1;
+                }
+            }
+            if (level > ROAD && level < TOKEN_COUNT) {
+                tokens[level] = value;
+                lastLevel = level;
+            }
+            i = next;
+            segmentStart = next;
+        }
+        return tokens;
+    }
+    
+    /**
+     * 数据集中单个字段的标准形式，与 {@link #tokenize} 切出的值一致：
+     * 去除分隔符，全角转半角、字母转大写；门牌号等去掉层级标识，中文数字转为阿拉伯数字
+     *
+     * @return 标准化后的值，为空时返回 null
+     */
+    String normalize(int level, String value) {
+        if (value == null) {
+            return null;
+        }
+        fill(value);
+        int end = length;
+        int begin = 0;
+        while (begin < end && buffer[begin] == BOUNDARY) {
+            begin++;
+        }
+        while (end > begin && buffer[end - 1] == BOUNDARY) {
+            end--;
+        }
+        if (level != ROAD) {
+            for (String marker : MARKERS[level]) {
+                if (endsWith(begin, end, marker)) {
+                    end -= marker.length();
+                    break;
+                }
+            }
+            if (begin < end && isChineseNumber(begin, end)) {
+                return chineseNumber(begin, end);
+            }
+        }
+        return begin < end ? new String(buffer, begin, end - begin) : null;
+    }
+    
+    /**
+     * 复制到缓冲区：分隔符合并为一个边界字符，全角字母数字转半角，字母转大写
+     */
+    private void fill(String input) {
+        if (buffer.length < input.length()) {
+            buffer = new char[Math.max(input.length(), buffer.length * 2)];
+        }
+        length = 0;
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= '０' && c <= '９' || c >= 'Ａ' && c <= 'Ｚ' || c >= 'ａ' && c <= 'ｚ') {
+                c = (char) (c - '０' + '0');
+            }
+            if (c >= 'a' && c <= 'z') {
+                c = (char) (c - 'a' + 'A');
+            }
+            if (isSeparator(c)) {
+                if (length > 0 && buffer[length - 1] != BOUNDARY) {
+                    buffer[length++] = BOUNDARY;
+                }
+            } else {
+                buffer[length++] = c;
+            }
+        }
+    }
+    
+    /**
+     * 街道名称最后一次出现的结束位置，没有出现时返回 0
+     */
+    private int lastEndOf(String street) {
+        int n = street.length();
+        for (int start = length - n; start >= 0; start--) {
+            if (matchAt(start, street) > 0) {
+                return start + n;
+            }
+        }
+        return 0;
+    }
+    
+    /**
+     * 从 i 开始的数字段的结束位置，i 不是数字段开头时返回 -1。
+     * 数字段是含数字的字母数字串、紧跟标识的纯字母串（如"A座"）或紧跟标识的中文数字串
+     */
+    private int runEnd(int i) {
+        if (isAlphanumeric(buffer[i]) && (i == 0 || !isAlphanumeric(buffer[i - 1]))) {
+            int end = i;
+            boolean digit = false;
+            while (end < length && isAlphanumeric(buffer[end])) {
+                digit |= Character.isDigit(buffer[end]);
+                end++;
+            }
+            return digit || hasMarker(end) ? end : -1;
+        }
+        if (isChineseDigit(buffer[i]) || buffer[i] == '十') {
+            int end = i;
+            while (end < length && (isChineseDigit(buffer[end]) || buffer[end] == '十')) {
+                end++;
+            }
+            return hasMarker(end) ? end : -1;
+        }
+        return -1;
+    }
+    
+    private boolean hasMarker(int position) {
+        if (matchAt(position, LANE_MARKER) > 0) {
+            return true;
+        }
+        for (int level = NUMBER; level < TOKEN_COUNT; level++) {
+            if (matchAny(position, MARKERS[level]) > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private String runValue(int start, int end) {
+        return isChineseNumber(start, end) ? chineseNumber(start, end) : new String(buffer, start, end - start);
+    }
+    
+    /**
+     * 道路文字：去掉其中最后一个区县、街道名称及之前的部分，剥离后至少保留两个字
+     */
+    private String stripAdmin(int start, int end) {
+        int begin = start;
+        for (int i = start + 1; i < end - 1; i++) {
+            for (String[] suffixes : ADMIN_SUFFIXES) {
+                for (String suffix : suffixes) {
+                    int suffixEnd = matchAt(i, suffix);
+                    if (suffixEnd > 0 && end - suffixEnd >= 2 && suffixEnd > begin) {
+                        begin = suffixEnd;
+                    }
+                }
+            }
+        }
+        while (begin < end && buffer[begin] == BOUNDARY) {
+            begin++;
+        }
+        return new String(buffer, begin, end - begin);
+    }
+    
+    private int matchAny(int position, String[] markers) {
+        for (String marker : markers) {
+            int end = matchAt(position, marker);
+            if (end > 0) {
+                return end;
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * text 在 position 处出现时返回其结束位置，否则返回 -1
+     */
+    private int matchAt(int position, String text) {
+        if (position + text.length() > length) {
+            return -1;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (buffer[position + i] != text.charAt(i)) {
+                return -1;
+            }
+        }
+        return position + text.length();
+    }
+    
+    private boolean endsWithAny(int start, int end, String[] suffixes) {
+        for (String suffix : suffixes) {
+            if (endsWith(start, end, suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    private boolean endsWith(int start, int end, String suffix) {
+        return end - start >= suffix.length() && matchAt(end - suffix.length(), suffix) == end;
+    }
+    
+    private boolean isChineseNumber(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!isChineseDigit(buffer[i]) && buffer[i] != '十') {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    /**
+     * 中文数字转阿拉伯数字：含"十"时按 0-99 计（"十二"、"二十"），否则逐位转换（"二〇一"）
+     */
+    private String chineseNumber(int start, int end) {
+        int ten = -1;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == '十') {
+                ten = i;
+                break;
+            }
+        }
+        if (ten < 0) {
+            StringBuilder digits = new StringBuilder(end - start);
+            for (int i = start; i < end; i++) {
+                digits.append(chineseDigit(buffer[i]));
+            }
+            return digits.toString();
+        }
+        int tens = ten == start ? 1 : chineseDigit(buffer[ten - 1]);
+        int ones = ten + 1 < end ? chineseDigit(buffer[ten + 1]) : 0;
+        return Integer.toString(tens * 10 + ones);
+    }
+    
+    private static int chineseDigit(char c) {
+        if (c == '两') {
+            return 2;
+        }
+        int digit = CHINESE_DIGITS.indexOf(c);
+        return digit <= 1 ? 0 : digit - 1;
+    }
+    
+    private static boolean isChineseDigit(char c) {
+        return CHINESE_DIGITS.indexOf(c) >= 0 || c == '两';
+    }
+    
+    private static boolean isAlphanumeric(char c) {
+        return c >= '0' && c <= '9' || c >= 'A' && c <= 'Z';
+    }
+    
+    /**
+     * 在地址预处理分隔符之外，"-"、"#"、"/" 也用作楼栋、单元和室之间的分隔
+     */
+    private static boolean isSeparator(char c) {
+        switch (c) {
+            case ' ':
+            case '\t':
+            case '\n':
+            case '\u000B':
+            case '\f':
+            case '\r':
+            case ',':
+            case '，':
+            case '。':
+            case '、':
+            case '-':
+            case '－':
+            case '—':
+            case '#':
+            case '＃':
+            case '/':
+                return true;
+            default:
+                return false;
+        }
+    }
+}
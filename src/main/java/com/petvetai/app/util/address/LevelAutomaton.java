@@ -0,0 +1,284 @@
+package com.petvetai.app.util.address;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 行政区划层级识别自动机（Aho-Corasick）
+ * 模式串包括索引中全部已知的层级名称和各层级的后缀关键词（省、市、区、街道等），
+ * 对输入地址做一次线性扫描即可找出所有出现的省、市、区县、街道名称及后缀。
+ * 节点布局与 {@link CompactTrie} 相同：按层序编号，子节点连续且按字符有序，二分查找定位
+ *
+ * @author PetVetAI
+ */
+final class LevelAutomaton {
+    
+    static final int PROVINCE = 0;
+    static final int CITY = 1;
+    static final int DISTRICT = 2;
+    static final int STREET = 3;
+    
+    static final int LEVEL_COUNT = 4;
+    
+    /**
+     * 各层级的后缀关键词，下标为层级
+     */
+    static final String[][] SUFFIX_KEYWORDS = {
+            {"省", "自治区", "特别行政区"},
+            {"市", "州", "盟", "地区"},
+            {"区", "县", "旗", "自治县"},
+            {"街道", "镇", "乡", "街道办"}
+    };
+    
+    /**
+     * 已知名称标志位，第 level 位表示该模式是某个该层级的名称
+     */
+    static int nameFlag(int level) {
+        return 1 << level;
+    }
+    
+    /**
+     * 后缀关键词标志位，第 level + 4 位表示该模式是该层级的后缀关键词
+     */
+    static int suffixFlag(int level) {
+        return 1 << (level + LEVEL_COUNT);
+    }
+    
+    /**
+     * 命中回调
+     */
+    @FunctionalInterface
+    interface HitConsumer {
+        /**
+         * @param start 模式在文本中的起始位置
+         * @param end   模式在文本中的结束位置（不包含）
+         * @param flags 模式的标志位
+         */
+        void accept(int start, int end, int flags);
+    }
+    
+    private final char[] labels;
+    private final int[] firstChild;
+    private final int[] depths;
+    
+    /**
+     * 失败指针
+     */
+    private final int[] fail;
+    
+    /**
+     * 在该节点结束的模式标志位，0 表示不是模式结尾
+     */
+    private final int[] outputs;
+    
+    /**
+     * 沿失败指针链上下一个有输出的节点，-1 表示没有
+     */
+    private final int[] outputLinks;
+    
+    private LevelAutomaton(char[] labels, int[] firstChild, int[] depths, int[] fail,
+                           int[] outputs, int[] outputLinks) {
+        this.labels = labels;
+        this.firstChild = firstChild;
+        this.depths = depths;
+        this.fail = fail;
+        this.outputs = outputs;
+        this.outputLinks = outputLinks;
+    }
+    
+    /**
+     * 由已知层级名称构建自动机，后缀关键词自动加入
+     *
+     * @param names 名称 -> 层级标志位（{@link #nameFlag} 的组合）
+     */
+    static LevelAutomaton build(Map<String, Integer> names) {
+        return build(names, true);
+    }
+    
+    /**
+     * 由已知层级名称构建自动机
+     *
+     * @param names        名称 -> 层级标志位（{@link #nameFlag} 的组合）
+     * @param withSuffixes 是否加入后缀关键词；与主自动机一起扫描的增量自动机不加，避免后缀被重复统计
+     */
+    static LevelAutomaton build(Map<String, Integer> names, boolean withSuffixes) {
+        Map<String, Integer> patterns = new HashMap<>(names);
+        if (withSuffixes) {
+            for (int level = 0; level < LEVEL_COUNT; level++) {
+                for (String keyword : SUFFIX_KEYWORDS[level]) {
+                    patterns.merge(keyword, suffixFlag(level), (a, b) -> a | b);
+                }
+            }
+        }
+        patterns.remove("");
+        
+        String[] keys = patterns.keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        
+        // 按层序展开节点，每个节点对应有序模式串中的一段 [lo, hi)
+        int capacity = Math.max(16, keys.length * 2);
+        char[] labels = new char[capacity];
+        int[] firstChild = new int[capacity + 1];
+        int[] depths = new int[capacity];
+        int[] parents = new int[capacity];
+        int[] outputs = new int[capacity];
+        int[] rangeLo = new int[capacity];
+        int[] rangeHi = new int[capacity];
+        
+        rangeHi[0] = keys.length;
+        int nodeCount = 1;
+        for (int node = 0; node < nodeCount; node++) {
+            int lo = rangeLo[node];
+            int hi = rangeHi[node];
+            int depth = depths[node];
+            
+            if (lo < hi && keys[lo].length() == depth) {
+                outputs[node] = patterns.get(keys[lo]);
+                lo++;
+            }
+            
+            firstChild[node] = nodeCount;
+            while (lo < hi) {
+                char c = keys[lo].charAt(depth);
+                int end = lo + 1;
+                while (end < hi && keys[end].charAt(depth) == c) {
+                    end++;
+                }
+                if (nodeCount == labels.length) {
+                    int newCapacity = labels.length * 2;
+                    labels = Arrays.copyOf(labels, newCapacity);
+                    firstChild = Arrays.copyOf(firstChild, newCapacity + 1);
+                    depths = Arrays.copyOf(depths, newCapacity);
+                    parents = Arrays.copyOf(parents, newCapacity);
+                    outputs = Arrays.copyOf(outputs, newCapacity);
+                    rangeLo = Arrays.copyOf(rangeLo, newCapacity);
+                    rangeHi = Arrays.copyOf(rangeHi, newCapacity);
+                }
+                labels[nodeCount] = c;
+                depths[nodeCount] = depth + 1;
+                parents[nodeCount] = node;
+                rangeLo[nodeCount] = lo;
+                rangeHi[nodeCount] = end;
+                nodeCount++;
+                lo = end;
+            }
+        }
+        firstChild[nodeCount] = nodeCount;
+        
+        LevelAutomaton automaton = new LevelAutomaton(
+                Arrays.copyOf(labels, nodeCount),
+                Arrays.copyOf(firstChild, nodeCount + 1),
+                Arrays.copyOf(depths, nodeCount),
+                new int[nodeCount],
+                Arrays.copyOf(outputs, nodeCount),
+                new int[nodeCount]);
+        
+        // 层序编号保证父节点和更浅的失败目标先于当前节点计算
+        automaton.outputLinks[0] = -1;
+        for (int node = 1; node < nodeCount; node++) {
+            int parent = parents[node];
+            int target = 0;
+            if (parent != 0) {
+                int f = automaton.fail[parent];
+                int next = automaton.child(f, labels[node]);
+                while (next < 0 && f != 0) {
+                    f = automaton.fail[f];
+                    next = automaton.child(f, labels[node]);
+                }
+                target = Math.max(next, 0);
+            }
+            automaton.fail[node] = target;
+            automaton.outputLinks[node] = automaton.outputs[target] != 0 ? target : automaton.outputLinks[target];
+        }
+        return automaton;
+    }
+    
+    /**
+     * 写入快照：节点数，随后依次为各数组
+     */
+    void writeTo(SnapshotOutput out) throws IOException {
+        out.writeInt(labels.length);
+        out.writeChars(CharBuffer.wrap(labels));
+        out.writeInts(IntBuffer.wrap(firstChild));
+        out.writeInts(IntBuffer.wrap(depths));
+        out.writeInts(IntBuffer.wrap(fail));
+        out.writeInts(IntBuffer.wrap(outputs));
+        out.writeInts(IntBuffer.wrap(outputLinks));
+    }
+    
+    /**
+     * 从快照读取，自动机只包含层级名称，规模很小，复制到堆内数组以保持扫描速度
+     */
+    static LevelAutomaton readFrom(SnapshotInput in) {
+        int nodeCount = in.readInt();
+        char[] labels = new char[nodeCount];
+        in.chars(nodeCount).get(labels);
+        return new LevelAutomaton(labels,
+                toArray(in.ints(nodeCount + 1)),
+                toArray(in.ints(nodeCount)),
+                toArray(in.ints(nodeCount)),
+                toArray(in.ints(nodeCount)),
+                toArray(in.ints(nodeCount)));
+    }
+    
+    private static int[] toArray(IntBuffer buffer) {
+        int[] array = new int[buffer.remaining()];
+        buffer.get(array);
+        return array;
+    }
+    
+    /**
+     * 扫描文本，按结束位置顺序回调所有命中的模式（含重叠命中）
+     */
+    void scan(CharSequence text, HitConsumer consumer) {
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            state = step(state, text.charAt(i));
+            emit(state, i + 1, consumer);
+        }
+    }
+    
+    /**
+     * 自动机状态转移
+     */
+    int step(int state, char c) {
+        int next = child(state, c);
+        while (next < 0 && state != 0) {
+            state = fail[state];
+            next = child(state, c);
+        }
+        return Math.max(next, 0);
+    }
+    
+    /**
+     * 回调在当前状态结束的全部模式
+     */
+    void emit(int state, int end, HitConsumer consumer) {
+        int node = outputs[state] != 0 ? state : outputLinks[state];
+        while (node > 0) {
+            consumer.accept(end - depths[node], end, outputs[node]);
+            node = outputLinks[node];
+        }
+    }
+    
+    private int child(int node, char c) {
+        int lo = firstChild[node];
+        int hi = firstChild[node + 1] - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels[mid];
+            if (label < c) {
+                lo = mid + 1;
+            } else if (label > c) {
+                hi = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+}
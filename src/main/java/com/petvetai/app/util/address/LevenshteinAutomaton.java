@@ -0,0 +1,134 @@
+package com.petvetai.app.util.address;
+
+import java.util.Arrays;
+
+/**
+ * Levenshtein 自动机
+ * 识别与模式串编辑距离不超过上限的字符串。状态是编辑距离动态规划的一行（超过上限的值截断为上限 + 1），
+ * 与 {@link CompactTrie} 求交时按深度优先顺序逐字符转移，状态最小值超过上限的子树整体剪枝，
+ * 只访问与模式串前缀足够接近的节点；每行只计算对角线附近宽度为 2 * 上限 + 1 的带内单元。
+ * 自动机持有按深度复用的状态行，非线程安全，每次查询或每个请求使用一个实例
+ *
+ * @author PetVetAI
+ */
+final class LevenshteinAutomaton {
+    
+    /**
+     * 编辑距离上限的最大值
+     */
+    static final int MAX_DISTANCE = 2;
+    
+    private final String pattern;
+    private final int maxDistance;
+    
+    /**
+     * 第 d 行为读入 d 个字符后的状态
+     */
+    private int[][] rows;
+    
+    LevenshteinAutomaton(String pattern, int maxDistance) {
+        this.pattern = pattern;
+        this.maxDistance = maxDistance;
+        this.rows = new int[pattern.length() + maxDistance + 1][];
+        int[] first = new int[pattern.length() + 1];
+        for (int j = 0; j < first.length; j++) {
+            first[j] = Math.min(j, maxDistance + 1);
+        }
+        rows[0] = first;
+    }
+    
+    /**
+     * 按长度确定编辑距离上限：单字不容错，2~6 个字（绝大多数层级名称）允许 1 处错误，更长的允许 2 处
+     */
+    static int maxDistance(int length) {
+        if (length <= 1) {
+            return 0;
+        }
+        return length <= 6 ? 1 : MAX_DISTANCE;
+    }
+    
+    int maxDistance() {
+        return maxDistance;
+    }
+    
+    /**
+     * 在读入 depth - 1 个字符的状态上读入第 depth 个字符（从 1 开始），返回新状态中的最小值，
+     * 超过上限时说明再读入任何字符都不会被接受
+     */
+    int step(int depth, char c) {
+        if (depth == rows.length) {
+            rows = Arrays.copyOf(rows, rows.length * 2);
+        }
+        int limit = maxDistance + 1;
+        int[] prev = rows[depth - 1];
+        int[] row = rows[depth];
+        if (row == null) {
+            row = new int[prev.length];
+            Arrays.fill(row, limit);
+            rows[depth] = row;
+        }
+        
+        // 只有 |depth - j| <= maxDistance 的单元可能不超过上限，带外单元保持为上限 + 1
+        int lo = Math.max(0, depth - maxDistance);
+        int hi = Math.min(row.length - 1, depth + maxDistance);
+        int min = limit;
+        if (lo == 0) {
+            row[0] = Math.min(depth, limit);
+            min = row[0];
+            lo = 1;
+        }
+        for (int j = lo; j <= hi; j++) {
+            int cost = pattern.charAt(j - 1) == c ? 0 : 1;
+            int value = Math.min(prev[j - 1] + cost, Math.min(prev[j], row[j - 1]) + 1);
+            row[j] = Math.min(value, limit);
+            min = Math.min(min, row[j]);
+        }
+        return min;
+    }
+    
+    /**
+     * 状态最小值等于上限时，下一个字符只有等于模式串中状态值恰好为上限的位置上的字符才可能被接受，
+     * 把这些字符（去重）写入 out，返回个数
+     */
+    int exactChars(int depth, char[] out) {
+        int[] row = rows[depth];
+        int count = 0;
+        int hi = Math.min(pattern.length() - 1, depth + maxDistance);
+        for (int j = Math.max(0, depth - maxDistance); j <= hi; j++) {
+            if (row[j] == maxDistance) {
+                char c = pattern.charAt(j);
+                boolean seen = false;
+                for (int i = 0; i < count && !seen; i++) {
+                    seen = out[i] == c;
+                }
+                if (!seen) {
+                    out[count++] = c;
+                }
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 读入 depth 个字符后与模式串的编辑距离，超过上限时为上限 + 1
+     */
+    int distance(int depth) {
+        return rows[depth][pattern.length()];
+    }
+    
+    /**
+     * 与 text 的编辑距离，超过上限时返回 -1
+     */
+    int distance(String text) {
+        if (Math.abs(text.length() - pattern.length()) > maxDistance) {
+            return -1;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (step(i + 1, text.charAt(i)) > maxDistance) {
+                return -1;
+            }
+        }
+        int distance = distance(text.length());
+        return distance <= maxDistance ? distance : -1;
+    }
+}
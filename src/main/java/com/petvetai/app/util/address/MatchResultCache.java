@@ -0,0 +1,215 @@
+package com.petvetai.app.util.address;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.MatchResult;
+
+/**
+ * 地址匹配结果缓存
+ * 以标准化后的地址为键，基于 Caffeine 的 W-TinyLFU 淘汰策略，重复提交的地址直接返回缓存结果。
+ * 条目按索引代数区分，索引重建后旧代数的条目不再命中，随后由淘汰策略逐步移出；
+ * 不在代数变化时整体清空，按省分区的索引中各分区共享同一个缓存，单个分区加载或更新不影响其他分区的条目。
+ * 同时限制条目数和估算字节数：Caffeine 只支持一种上限，因此以字节数为总权重，
+ * 每个条目的权重取估算字节数与"总字节数 / 最大条目数"中的较大者，条目数也就不会超过上限。
+ * 写入时把结果复制成只读对象（结果及其行政区划的 setter 抛出 {@link UnsupportedOperationException}），
+ * 命中时直接返回缓存中的对象，不再逐次复制；调用方需要修改时应自行复制
+ *
+ * @author PetVetAI
+ */
+public final class MatchResultCache {
+    
+    private final Cache<Key, MatchResult> cache;
+    
+    /**
+     * @param maxEntries 最大条目数
+     * @param maxBytes   最大估算字节数
+     */
+    public MatchResultCache(long maxEntries, long maxBytes) {
+        if (maxEntries < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("缓存容量必须大于 0: maxEntries=" + maxEntries + ", maxBytes=" + maxBytes);
+        }
+        int minWeight = (int) Math.min(Integer.MAX_VALUE, (maxBytes + maxEntries - 1) / maxEntries);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, MatchResult result) -> Math.max(minWeight, estimateBytes(key.address, result)))
+                .recordStats()
+                .build();
+    }
+    
+    /**
+     * 查询缓存，未命中时返回 null；返回的结果只读
+     */
+    public MatchResult get(long indexGeneration, String normalizedAddress) {
+        return cache.getIfPresent(new Key(indexGeneration, normalizedAddress));
+    }
+    
+    /**
+     * 写入缓存，保存的是结果的只读副本
+     *
+     * @return 写入的只读副本，调用方应返回它，使未命中和命中时拿到的结果行为一致
+     */
+    public MatchResult put(long indexGeneration, String normalizedAddress, MatchResult result) {
+        MatchResult frozen = freeze(result);
+        cache.put(new Key(indexGeneration, normalizedAddress), frozen);
+        return frozen;
+    }
+    
+    public long hitCount() {
+        return cache.stats().hitCount();
+    }
+    
+    public long missCount() {
+        return cache.stats().missCount();
+    }
+    
+    public long evictionCount() {
+        return cache.stats().evictionCount();
+    }
+    
+    /**
+     * 当前条目数（近似值）
+     */
+    public long size() {
+        return cache.estimatedSize();
+    }
+    
+    /**
+     * 复制成只读的匹配结果（含行政区划对象），已是只读对象时原样返回
+     */
+    static MatchResult freeze(MatchResult result) {
+        if (result instanceof FrozenMatchResult) {
+            return result;
+        }
+        AdministrativeDivision division = result.getDivision();
+        return new FrozenMatchResult(result.getCode(), division == null ? null : new FrozenDivision(division),
+                result.getScore(), result.isAbnormal(), result.getAbnormalReason());
+    }
+    
+    /**
+     * 估算条目占用的字节数：键、结果对象、行政区划对象及其字符串
+     */
+    private static int estimateBytes(String address, MatchResult result) {
+        long bytes = 64 + stringBytes(address) + 40 + stringBytes(result.getCode())
+                + stringBytes(result.getAbnormalReason());
+        AdministrativeDivision division = result.getDivision();
+        if (division != null) {
+            bytes += 32 + stringBytes(division.getCode()) + stringBytes(division.getProvince())
+                    + stringBytes(division.getCity()) + stringBytes(division.getDistrict())
+                    + stringBytes(division.getStreet());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+    
+    private static long stringBytes(String s) {
+        // 对象头和数组头约 40 字节，中文按 UTF-16 每字符 2 字节
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+    
+    /**
+     * 只读的匹配结果
+     */
+    private static final class FrozenMatchResult extends MatchResult {
+        
+        FrozenMatchResult(String code, AdministrativeDivision division, double score, boolean abnormal,
+                          String abnormalReason) {
+            super(code, division, score, abnormal, abnormalReason);
+        }
+        
+        @Override
+        public void setCode(String code) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setDivision(AdministrativeDivision division) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setScore(double score) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setAbnormal(boolean abnormal) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setAbnormalReason(String abnormalReason) {
+            throw readOnly();
+        }
+    }
+    
+    /**
+     * 只读的行政区划
+     */
+    private static final class FrozenDivision extends AdministrativeDivision {
+        
+        FrozenDivision(AdministrativeDivision division) {
+            super(division.getCode(), division.getProvince(), division.getCity(), division.getDistrict(),
+                    division.getStreet());
+        }
+        
+        @Override
+        public void setCode(String code) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setProvince(String province) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setCity(String city) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setDistrict(String district) {
+            throw readOnly();
+        }
+        
+        @Override
+        public void setStreet(String street) {
+            throw readOnly();
+        }
+    }
+    
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("缓存的匹配结果是只读的，需要修改时请先复制");
+    }
+    
+    /**
+     * 缓存键：索引代数 + 标准化地址
+     */
+    private static final class Key {
+        
+        private final long generation;
+        private final String address;
+        
+        Key(long generation, String address) {
+            this.generation = generation;
+            this.address = address;
+        }
+        
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return generation == other.generation && address.equals(other.address);
+        }
+        
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(generation) + address.hashCode();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.petvetai.app.util.address;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.nio.IntBuffer;
+import java.util.function.IntConsumer;
+
+/**
+ * 行政区划序号区间
+ * 前缀树按深度优先顺序排列倒排记录，任一节点子树内的全部记录是共享数组中连续的一段 [start, end)。
+ * 本类是该区间的只读视图，不复制数据；同一行政区划可能挂在子树内多个关键词下，因此区间中的序号可能重复。
+ * 应用增量变更后的索引由基础段和增量段组成：基础段的区间跳过已删除的序号，
+ * 增量段的区间加上序号偏移后接在后面
+ *
+ * @author PetVetAI
+ */
+public final class OrdinalRange {
+    
+    static final OrdinalRange EMPTY = new OrdinalRange(IntBuffer.allocate(0), 0, 0);
+    
+    private final IntBuffer ordinals;
+    private final int start;
+    private final int end;
+    
+    /**
+     * 加到区间内每个序号上的偏移
+     */
+    private final int offset;
+    
+    /**
+     * 需要跳过的序号（偏移前），没有时为 null
+     */
+    private final ImmutableRoaringBitmap excluded;
+    
+    /**
+     * 接在本区间之后的区间，没有时为 null
+     */
+    private final OrdinalRange next;
+    
+    OrdinalRange(IntBuffer ordinals, int start, int end) {
+        this(ordinals, start, end, 0, null, null);
+    }
+    
+    private OrdinalRange(IntBuffer ordinals, int start, int end, int offset,
+                         ImmutableRoaringBitmap excluded, OrdinalRange next) {
+        this.ordinals = ordinals;
+        this.start = start;
+        this.end = end;
+        this.offset = offset;
+        this.excluded = excluded;
+        this.next = next;
+    }
+    
+    /**
+     * 跳过 excluded 中的序号
+     */
+    OrdinalRange excluding(ImmutableRoaringBitmap excluded) {
+        return excluded.isEmpty() ? this : new OrdinalRange(ordinals, start, end, offset, excluded, next);
+    }
+    
+    /**
+     * 在本区间之后接上 other，other 中的每个序号加上 offset
+     */
+    OrdinalRange concat(OrdinalRange other, int offset) {
+        if (other.isEmpty()) {
+            return this;
+        }
+        return new OrdinalRange(ordinals, start, end, this.offset, excluded,
+                next == null ? other.shift(offset) : next.concat(other, offset));
+    }
+    
+    private OrdinalRange shift(int delta) {
+        return new OrdinalRange(ordinals, start, end, offset + delta, excluded,
+                next == null ? null : next.shift(delta));
+    }
+    
+    /**
+     * 区间内记录数（含重复序号和待跳过的序号），可作为去重后数量的上界；有效记录数见 {@link #count()}
+     */
+    public int length() {
+        return end - start + (next != null ? next.length() : 0);
+    }
+    
+    /**
+     * 区间内有效记录数：不含待跳过的序号，含重复序号
+     */
+    public int count() {
+        int count = 0;
+        if (excluded == null) {
+            count = end - start;
+        } else {
+            for (int i = start; i < end; i++) {
+                if (!excluded.contains(ordinals.get(i))) {
+                    count++;
+                }
+            }
+        }
+        return count + (next != null ? next.count() : 0);
+    }
+    
+    /**
+     * 区间内是否没有有效记录：名称的全部行政区划都已删除时为 true，遇到第一条有效记录即返回
+     */
+    public boolean isEmpty() {
+        if (excluded == null) {
+            if (end > start) {
+                return false;
+            }
+        } else {
+            for (int i = start; i < end; i++) {
+                if (!excluded.contains(ordinals.get(i))) {
+                    return false;
+                }
+            }
+        }
+        return next == null || next.isEmpty();
+    }
+    
+    /**
+     * 遍历区间内全部序号
+     */
+    public void forEach(IntConsumer action) {
+        forEach(Integer.MAX_VALUE, action);
+    }
+    
+    /**
+     * 最多遍历 limit 条记录（含跳过的记录），返回实际遍历的条数
+     */
+    public int forEach(int limit, IntConsumer action) {
+        int stop = (int) Math.min(end, (long) start + limit);
+        for (int i = start; i < stop; i++) {
+            int ordinal = ordinals.get(i);
+            if (excluded == null || !excluded.contains(ordinal)) {
+                action.accept(ordinal + offset);
+            }
+        }
+        int visited = stop - start;
+        if (next != null && visited < limit) {
+            visited += next.forEach(limit - visited, action);
+        }
+        return visited;
+    }
+}
@@ -0,0 +1,191 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.util.PinyinUtil;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 解析后的输入地址
+ * 每个请求只解析一次，层级切分结果和关键词在所有候选的打分中复用
+ *
+ * @author PetVetAI
+ */
+final class ParsedAddress {
+    
+    /**
+     * 标准化后的地址
+     */
+    private final String address;
+    
+    /**
+     * 地址层级 [省, 市, 区, 街道]，未识别的层级为 null
+     */
+    private final String[] levels;
+    
+    /**
+     * 用于检索的关键词
+     */
+    private final List<String> keywords;
+    
+    /**
+     * 异常原因（多行政区划），正常地址为 null
+     */
+    private final String abnormalReason;
+    
+    /**
+     * 各层级的读音网格，首次用到时生成，每个请求最多生成一次
+     */
+    private final String[][][] levelReadings;
+    
+    /**
+     * 各层级的 Levenshtein 自动机，首次用到时创建，状态行在同一请求的所有候选间复用
+     */
+    private final LevenshteinAutomaton[] levelAutomata;
+    
+    private ParsedAddress(String address, String[] levels, List<String> keywords, String abnormalReason) {
+        this.address = address;
+        this.levels = levels;
+        this.keywords = keywords;
+        this.abnormalReason = abnormalReason;
+        this.levelReadings = new String[levels.length][][];
+        this.levelAutomata = new LevenshteinAutomaton[levels.length];
+    }
+    
+    /**
+     * 根据扫描器记录的自动机命中切分地址层级
+     * 每个层级优先取从当前位置开始的最长已知名称；没有已知名称时退回按后缀关键词切分：
+     * 取当前位置之后（不在开头）最早出现的该层级后缀，同起点取最长，并吸收紧随其后的同层级后缀（如"州市"）
+     */
+    static ParsedAddress parse(String address, AddressScanner hits) {
+        String[] levels = new String[LevelAutomaton.LEVEL_COUNT];
+        int cursor = 0;
+        int provinceFlags = 0;
+        for (int level = 0; level < LevelAutomaton.LEVEL_COUNT; level++) {
+            int end = -1;
+            int flags = 0;
+            
+            // 1. 已知名称
+            int nameFlag = LevelAutomaton.nameFlag(level);
+            for (int i = 0; i < hits.hitCount(); i++) {
+                if (hits.hitStart(i) == cursor && (hits.hitFlags(i) & nameFlag) != 0 && hits.hitEnd(i) > end) {
+                    end = hits.hitEnd(i);
+                    flags = hits.hitFlags(i);
+                }
+            }
+            
+            // 2. 后缀关键词
+            if (end < 0) {
+                int suffixFlag = LevelAutomaton.suffixFlag(level);
+                int start = Integer.MAX_VALUE;
+                for (int i = 0; i < hits.hitCount(); i++) {
+                    int hitStart = hits.hitStart(i);
+                    if (hitStart > cursor && (hits.hitFlags(i) & suffixFlag) != 0
+                            && (hitStart < start || hitStart == start && hits.hitEnd(i) > end)) {
+                        start = hitStart;
+                        end = hits.hitEnd(i);
+                    }
+                }
+                for (int extended = hits.longestHitAt(end, suffixFlag); extended > 0;
+                     extended = hits.longestHitAt(end, suffixFlag)) {
+                    end = extended;
+                }
+            }
+            
+            if (end > 0) {
+                levels[level] = address.substring(cursor, end);
+                if (level == LevelAutomaton.PROVINCE) {
+                    provinceFlags = flags;
+                }
+                if (level != LevelAutomaton.STREET) {
+                    cursor = end;
+                }
+            } else if (level == LevelAutomaton.CITY
+                    && (provinceFlags & LevelAutomaton.nameFlag(LevelAutomaton.CITY)) != 0) {
+                // 直辖市：省级名称同时也是市级名称（如"北京市海淀区"）
+                levels[level] = levels[LevelAutomaton.PROVINCE];
+            }
+        }
+        
+        return new ParsedAddress(address, levels, extractKeywords(address, levels), hits.abnormalReason());
+    }
+    
+    /**
+     * 提取地址关键词
+     */
+    private static List<String> extractKeywords(String address, String[] levels) {
+        List<String> keywords = new ArrayList<>();
+        
+        // 提取完整地址
+        keywords.add(address);
+        
+        // 提取各个层级
+        for (String level : levels) {
+            if (level != null && !level.isEmpty()) {
+                keywords.add(level);
+            }
+        }
+        
+        // 提取部分匹配（处理缺少层级的情况）
+        if (levels[0] == null && levels[1] != null) {
+            // 缺少省份，只有市
+            keywords.add(levels[1]);
+        }
+        if (levels[1] == null && levels[2] != null) {
+            // 缺少市，只有区
+            keywords.add(levels[2]);
+        }
+        
+        return Collections.unmodifiableList(keywords);
+    }
+    
+    String address() {
+        return address;
+    }
+    
+    /**
+     * 地址层级 [省, 市, 区, 街道]，未识别的层级为 null（只读，调用方不得修改）
+     */
+    String[] levels() {
+        return levels;
+    }
+    
+    List<String> keywords() {
+        return keywords;
+    }
+    
+    String abnormalReason() {
+        return abnormalReason;
+    }
+    
+    /**
+     * 第 i 个层级的读音网格，层级未识别时返回 null
+     */
+    String[][] levelReadings(int i) {
+        if (levels[i] == null) {
+            return null;
+        }
+        String[][] readings = levelReadings[i];
+        if (readings == null) {
+            readings = PinyinUtil.getReadings(levels[i]);
+            levelReadings[i] = readings;
+        }
+        return readings;
+    }
+    
+    /**
+     * 第 i 个层级与 name 的编辑距离，层级未识别或超过上限（见 {@link LevenshteinAutomaton#maxDistance}）时返回 -1
+     */
+    int levelEditDistance(int i, String name) {
+        if (levels[i] == null) {
+            return -1;
+        }
+        LevenshteinAutomaton automaton = levelAutomata[i];
+        if (automaton == null) {
+            automaton = new LevenshteinAutomaton(levels[i], LevenshteinAutomaton.maxDistance(levels[i].length()));
+            levelAutomata[i] = automaton;
+        }
+        return automaton.distance(name);
+    }
+}
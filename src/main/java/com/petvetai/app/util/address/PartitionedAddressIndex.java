@@ -0,0 +1,566 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.DivisionChange;
+import com.petvetai.app.domain.address.MatchResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按省分区、按需加载的地址索引
+ * 全国数据按行政区划编码的省级前缀拆成多个分区，每个分区是一份独立的 {@link AddressIndexSnapshot} 快照文件；
+ * 常驻内存的只有路由表：省、市、区县名称（及去掉后缀的简称） -> 所在分区。
+ * 匹配时先用路由表的识别自动机扫描输入，只在命中名称最多的一到两个分区中匹配；
+ * 分区在第一次被路由到时加载，常驻分区的行政区划总数超过上限时淘汰最久未使用的分区。
+ * 路由表没有命中任何名称（如纯拼音输入）时只在已常驻的分区中匹配，不为这类请求加载分区，
+ * 否则一条无法识别的输入就会把全部分区加载一遍并淘汰正在使用的分区。
+ * <p>
+ * 目录布局：
+ * <pre>
+ * router.snap   路由表
+ * 33.snap       编码以 33 开头的行政区划的索引快照，其余分区同理
+ * </pre>
+ * 生成分区：{@code java -cp <classpath> com.petvetai.app.util.address.PartitionedAddressIndex <csv文件> <分区目录>}
+ *
+ * @author PetVetAI
+ */
+public final class PartitionedAddressIndex {
+    
+    static final int MAGIC = 0x50564152; // "PVAR"
+    static final int VERSION = 1;
+    
+    public static final String ROUTER_FILE = "router.snap";
+    private static final String PARTITION_SUFFIX = ".snap";
+    
+    /**
+     * 分区键：行政区划编码的前 2 位（省级编码）
+     */
+    private static final int PREFIX_LENGTH = 2;
+    
+    /**
+     * 单个请求最多路由到的分区数
+     */
+    private static final int MAX_ROUTED_PARTITIONS = 2;
+    
+    /**
+     * 简称标志位：只用于路由，不参与省级名称重复检测
+     */
+    private static final int ALIAS_FLAG = 1 << (2 * LevelAutomaton.LEVEL_COUNT);
+    
+    private static final ThreadLocal<AddressScanner> SCANNER = ThreadLocal.withInitial(AddressScanner::new);
+    
+    private final Path directory;
+    
+    /**
+     * 常驻分区的行政区划总数上限，刚加载的分区即使超过上限也保留
+     */
+    private final long maxResidentDivisions;
+    
+    /**
+     * 各分区匹配器共享的结果缓存，可为 null；缓存键带索引代数，不同分区的结果不会混淆
+     */
+    private final MatchResultCache cache;
+    
+    private volatile Router router;
+    
+    /**
+     * 分区键 -> 分区，包括尚未加载和已被淘汰的分区
+     */
+    private final Map<String, Partition> partitions = new ConcurrentHashMap<>();
+    
+    private final AtomicLong loadCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+    
+    /**
+     * 分区索引整体的代数：打开路由表和每次应用增量变更时分配新的代数，分区按需加载和淘汰不改变内容，代数不变
+     */
+    private volatile long generation = AddressIndex.nextGeneration();
+    
+    private PartitionedAddressIndex(Path directory, Router router, long maxResidentDivisions, MatchResultCache cache) {
+        this.directory = directory;
+        this.router = router;
+        this.maxResidentDivisions = maxResidentDivisions;
+        this.cache = cache;
+        for (String key : router.keys) {
+            partitions.put(key, new Partition(key));
+        }
+    }
+    
+    /**
+     * 打开分区目录，只读取路由表，分区在第一次使用时加载
+     *
+     * @param maxResidentDivisions 常驻分区的行政区划总数上限
+     * @param cache                匹配结果缓存，为 null 时不缓存
+     * @throws IOException 路由表不存在、格式错误或版本不兼容
+     */
+    public static PartitionedAddressIndex open(Path directory, long maxResidentDivisions, MatchResultCache cache)
+            throws IOException {
+        return new PartitionedAddressIndex(directory, Router.read(directory.resolve(ROUTER_FILE)),
+                maxResidentDivisions, cache);
+    }
+    
+    /**
+     * 把行政区划按省级编码分区，分别写成索引快照，最后写入路由表
+     */
+    public static void write(List<AdministrativeDivision> divisions, Path directory) throws IOException {
+        Map<String, List<AdministrativeDivision>> byPartition = new TreeMap<>();
+        Map<String, Integer> flags = new HashMap<>();
+        Map<String, Set<String>> partitionsByName = new HashMap<>();
+        for (AdministrativeDivision division : divisions) {
+            byPartition.computeIfAbsent(partitionKey(division.getCode()), key -> new ArrayList<>()).add(division);
+            addNames(division, flags, partitionsByName);
+        }
+        
+        Files.createDirectories(directory);
+        for (Map.Entry<String, List<AdministrativeDivision>> entry : byPartition.entrySet()) {
+            AddressIndexSnapshot.write(AddressIndex.build(entry.getValue()),
+                    directory.resolve(entry.getKey() + PARTITION_SUFFIX));
+        }
+        // 路由表最后写入，监听路由表的进程重新打开时各分区快照都已就绪
+        new Router(byPartition.keySet(), flags, partitionsByName).write(directory.resolve(ROUTER_FILE));
+    }
+    
+    /**
+     * 匹配地址
+     */
+    public MatchResult match(String inputAddress) {
+        if (inputAddress == null || inputAddress.trim().isEmpty()) {
+            return null;
+        }
+        return matchTopK(inputAddress, 1).get(0);
+    }
+    
+    /**
+     * 匹配地址，返回路由到的分区中分数最高的 k 个结果，语义与 {@link AddressMatcher#matchTopK} 相同
+     */
+    public List<MatchResult> matchTopK(String inputAddress, int k) {
+        if (k < 1) {
+            throw new IllegalArgumentException("k 必须大于 0: " + k);
+        }
+        if (inputAddress == null || inputAddress.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        
+        // 分区只认识本省的名称，跨省的重复省级名称由路由表检测
+        AddressScanner scanner = SCANNER.get();
+        Router current = router;
+        String normalizedAddress = scanner.scan(inputAddress, current.automaton);
+        String abnormalReason = scanner.abnormalReason();
+        
+        List<MatchResult> results = new ArrayList<>();
+        MatchResult noMatch = null;
+        for (Partition partition : route(current, normalizedAddress, scanner)) {
+            // 分区传入路由时已标准化的地址，单个结果走匹配器的结果缓存
+            for (MatchResult result : partition.matcher().matchNormalized(normalizedAddress, k)) {
+                if (result.getCode() != null) {
+                    results.add(result);
+                } else if (noMatch == null) {
+                    noMatch = result;
+                }
+            }
+        }
+        if (results.isEmpty()) {
+            results.add(noMatch != null ? noMatch : new MatchResult(null, null, 0.0, false, null));
+        }
+        // 稳定排序：同分时保留分区内的顺序，先路由到的分区在前
+        results.sort(Comparator.comparingDouble(MatchResult::getScore).reversed());
+        if (results.size() > k) {
+            results = new ArrayList<>(results.subList(0, k));
+        }
+        
+        if (abnormalReason != null) {
+            // 结果可能来自缓存，不修改原对象
+            for (int i = 0; i < results.size(); i++) {
+                MatchResult result = results.get(i);
+                if (!result.isAbnormal()) {
+                    results.set(i, new MatchResult(result.getCode(), result.getDivision(), result.getScore(),
+                            true, abnormalReason));
+                }
+            }
+        }
+        return results;
+    }
+    
+    /**
+     * 按命中的名称给分区投票，返回得票最多的分区（最多 {@link #MAX_ROUTED_PARTITIONS} 个）；
+     * 没有任何命中时只返回已常驻的分区，都未加载时返回空列表（结果为未匹配）
+     */
+    private List<Partition> route(Router current, String normalizedAddress, AddressScanner scanner) {
+        int[] votes = new int[current.keys.length];
+        int maxVotes = 0;
+        for (int i = 0; i < scanner.hitCount(); i++) {
+            int[] hitPartitions = current.partitions.get(
+                    normalizedAddress.substring(scanner.hitStart(i), scanner.hitEnd(i)));
+            if (hitPartitions != null) {
+                for (int partition : hitPartitions) {
+                    maxVotes = Math.max(maxVotes, ++votes[partition]);
+                }
+            }
+        }
+        
+        List<Partition> routed = new ArrayList<>(MAX_ROUTED_PARTITIONS);
+        for (int p = 0; p < current.keys.length; p++) {
+            Partition partition = partitions.get(current.keys[p]);
+            if (maxVotes == 0) {
+                if (partition.matcher != null) {
+                    routed.add(partition);
+                }
+            } else if (votes[p] == maxVotes) {
+                routed.add(partition);
+                if (routed.size() == MAX_ROUTED_PARTITIONS) {
+                    break;
+                }
+            }
+        }
+        return routed;
+    }
+    
+    /**
+     * 应用行政区划增量变更
+     * 变更按分区记录：已加载的分区立即生成新版本，未加载或已淘汰的分区在加载时重放；
+     * 新增和更名后的名称加入路由表
+     */
+    public void applyDelta(List<DivisionChange> changes) {
+        Map<String, List<DivisionChange>> byPartition = new TreeMap<>();
+        for (DivisionChange change : changes) {
+            byPartition.computeIfAbsent(partitionKey(change.getCode()), key -> new ArrayList<>()).add(change);
+        }
+        
+        synchronized (this) {
+            Set<String> keys = new TreeSet<>(Arrays.asList(router.keys));
+            keys.addAll(byPartition.keySet());
+            Map<String, Integer> flags = new HashMap<>(router.flags);
+            Map<String, Set<String>> partitionsByName = router.partitionsByName();
+            for (DivisionChange change : changes) {
+                if (change.getType() != DivisionChange.Type.REMOVE) {
+                    addNames(change.getDivision(), flags, partitionsByName);
+                }
+            }
+            for (String key : byPartition.keySet()) {
+                partitions.computeIfAbsent(key, Partition::new);
+            }
+            router = new Router(keys, flags, partitionsByName);
+        }
+        
+        byPartition.forEach((key, partitionChanges) -> partitions.get(key).applyDelta(partitionChanges));
+        generation = AddressIndex.nextGeneration();
+    }
+    
+    /**
+     * 加载分区快照并重放增量变更；没有快照文件的分区（只由增量变更产生）从空索引开始
+     */
+    private AddressMatcher load(Partition partition) {
+        AddressMatcher loaded;
+        synchronized (partition) {
+            if (partition.matcher != null) {
+                return partition.matcher;
+            }
+            Path path = directory.resolve(partition.key + PARTITION_SUFFIX);
+            AddressIndex index;
+            try {
+                index = Files.isRegularFile(path) ? AddressIndexSnapshot.read(path)
+                        : AddressIndex.build(Collections.emptyList());
+            } catch (IOException e) {
+                throw new UncheckedIOException("加载地址索引分区失败: " + path, e);
+            }
+            if (!partition.changes.isEmpty()) {
+                index = index.applyDelta(partition.changes);
+            }
+            loaded = new AddressMatcher(index, cache);
+            partition.matcher = loaded;
+        }
+        loadCount.incrementAndGet();
+        evict(partition);
+        return loaded;
+    }
+    
+    /**
+     * 常驻行政区划总数超过上限时，按最近使用时间从旧到新淘汰分区，keep 不淘汰。
+     * 被淘汰分区的索引在正在进行的请求结束后由 GC 回收
+     */
+    private synchronized void evict(Partition keep) {
+        long resident = getResidentDivisionCount();
+        while (resident > maxResidentDivisions) {
+            Partition eldest = null;
+            for (Partition partition : partitions.values()) {
+                if (partition != keep && partition.matcher != null
+                        && (eldest == null || partition.lastUsed < eldest.lastUsed)) {
+                    eldest = partition;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            synchronized (eldest) {
+                resident -= eldest.matcher.getIndex().size();
+                eldest.matcher = null;
+            }
+            evictionCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * 分区索引的代数，与 {@link AddressIndex#getGeneration()} 属于同一序列
+     */
+    public long getGeneration() {
+        return generation;
+    }
+    
+    /**
+     * 分区数量
+     */
+    public int getPartitionCount() {
+        return partitions.size();
+    }
+    
+    /**
+     * 当前常驻内存的分区数量
+     */
+    public int getResidentPartitionCount() {
+        int count = 0;
+        for (Partition partition : partitions.values()) {
+            if (partition.matcher != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 当前常驻分区的行政区划总数
+     */
+    public long getResidentDivisionCount() {
+        long count = 0;
+        for (Partition partition : partitions.values()) {
+            AddressMatcher matcher = partition.matcher;
+            if (matcher != null) {
+                count += matcher.getIndex().size();
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * 分区累计加载次数（含淘汰后重新加载）
+     */
+    public long getLoadCount() {
+        return loadCount.get();
+    }
+    
+    /**
+     * 分区累计淘汰次数
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+    
+    static String partitionKey(String code) {
+        return code.length() > PREFIX_LENGTH ? code.substring(0, PREFIX_LENGTH) : code;
+    }
+    
+    /**
+     * 把行政区划的省、市、区县名称及简称登记到所在分区，街道名称数量大，只在分区内索引
+     */
+    private static void addNames(AdministrativeDivision division, Map<String, Integer> flags,
+                                 Map<String, Set<String>> partitionsByName) {
+        String key = partitionKey(division.getCode());
+        String[] levels = division.getLevels();
+        for (int level = LevelAutomaton.PROVINCE; level < LevelAutomaton.STREET; level++) {
+            String name = levels[level];
+            if (name == null || name.isEmpty()) {
+                continue;
+            }
+            for (String variant : AddressIndex.nameVariants(name, level)) {
+                flags.merge(variant, variant.equals(name) ? LevelAutomaton.nameFlag(level) : ALIAS_FLAG,
+                        (a, b) -> a | b);
+                partitionsByName.computeIfAbsent(variant, n -> new TreeSet<>()).add(key);
+            }
+        }
+    }
+    
+    /**
+     * 分区：未加载或已被淘汰时 matcher 为 null
+     */
+    private final class Partition {
+        
+        private final String key;
+        
+        private volatile AddressMatcher matcher;
+        
+        /**
+         * 最近一次被路由到的时间（纳秒），淘汰时比较；不加锁更新，近似的最近使用顺序已经足够
+         */
+        private volatile long lastUsed;
+        
+        /**
+         * 打开分区目录以来该分区的全部增量变更，加载时重放，由分区对象的锁保护
+         */
+        private List<DivisionChange> changes = Collections.emptyList();
+        
+        Partition(String key) {
+            this.key = key;
+        }
+        
+        AddressMatcher matcher() {
+            lastUsed = System.nanoTime();
+            AddressMatcher current = matcher;
+            return current != null ? current : load(this);
+        }
+        
+        synchronized void applyDelta(List<DivisionChange> partitionChanges) {
+            List<DivisionChange> all = new ArrayList<>(changes.size() + partitionChanges.size());
+            all.addAll(changes);
+            all.addAll(partitionChanges);
+            changes = all;
+            if (matcher != null) {
+                matcher = new AddressMatcher(matcher.getIndex().applyDelta(partitionChanges), cache);
+            }
+        }
+    }
+    
+    /**
+     * 路由表：分区键、名称 -> 分区下标，以及由这些名称构建的识别自动机（不含后缀关键词）
+     * 文件布局与 {@link AddressIndexSnapshot} 相同的对齐规则：魔数、版本号、分区键字符串池、名称字符串池、
+     * 各名称的标志位、分区下标偏移（名称数 + 1 个）和分区下标
+     */
+    private static final class Router {
+        
+        private final String[] keys;
+        private final Map<String, Integer> flags;
+        private final Map<String, int[]> partitions;
+        private final LevelAutomaton automaton;
+        
+        Router(Collection<String> keys, Map<String, Integer> flags,
+               Map<String, ? extends Collection<String>> partitionsByName) {
+            this.keys = keys.toArray(new String[0]);
+            Map<String, Integer> keyIndexes = new HashMap<>();
+            for (int i = 0; i < this.keys.length; i++) {
+                keyIndexes.put(this.keys[i], i);
+            }
+            this.flags = flags;
+            this.partitions = new HashMap<>(partitionsByName.size() * 2);
+            partitionsByName.forEach((name, partitionKeys) ->
+                    partitions.put(name, partitionKeys.stream().mapToInt(keyIndexes::get).toArray()));
+            this.automaton = LevelAutomaton.build(flags, false);
+        }
+        
+        private Router(String[] keys, Map<String, Integer> flags, Map<String, int[]> partitions) {
+            this.keys = keys;
+            this.flags = flags;
+            this.partitions = partitions;
+            this.automaton = LevelAutomaton.build(flags, false);
+        }
+        
+        /**
+         * 名称 -> 分区键，用于在现有路由表上追加名称
+         */
+        Map<String, Set<String>> partitionsByName() {
+            Map<String, Set<String>> result = new HashMap<>(partitions.size() * 2);
+            partitions.forEach((name, indexes) -> {
+                Set<String> partitionKeys = new TreeSet<>();
+                for (int index : indexes) {
+                    partitionKeys.add(keys[index]);
+                }
+                result.put(name, partitionKeys);
+            });
+            return result;
+        }
+        
+        /**
+         * 先写临时文件再原子替换
+         */
+        void write(Path path) throws IOException {
+            List<String> names = new ArrayList<>(partitions.keySet());
+            int[] nameFlags = new int[names.size()];
+            int[] offsets = new int[names.size() + 1];
+            for (int i = 0; i < names.size(); i++) {
+                nameFlags[i] = flags.get(names.get(i));
+                offsets[i + 1] = offsets[i] + partitions.get(names.get(i)).length;
+            }
+            int[] indexes = new int[offsets[names.size()]];
+            for (int i = 0; i < names.size(); i++) {
+                int[] nameIndexes = partitions.get(names.get(i));
+                System.arraycopy(nameIndexes, 0, indexes, offsets[i], nameIndexes.length);
+            }
+            
+            Path temp = Files.createTempFile(path.toAbsolutePath().getParent(), path.getFileName().toString(), ".tmp");
+            try {
+                try (SnapshotOutput out = new SnapshotOutput(Files.newOutputStream(temp))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeStrings(Arrays.asList(keys));
+                    out.writeStrings(names);
+                    out.writeInts(IntBuffer.wrap(nameFlags));
+                    out.writeInts(IntBuffer.wrap(offsets));
+                    out.writeInts(IntBuffer.wrap(indexes));
+                }
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        }
+        
+        static Router read(Path path) throws IOException {
+            MappedByteBuffer buffer;
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            SnapshotInput in = new SnapshotInput(buffer);
+            if (in.readInt() != MAGIC) {
+                throw new IOException("不是地址索引路由表文件: " + path);
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException("不支持的地址索引路由表版本: " + version + "（当前版本 " + VERSION + "）");
+            }
+            String[] keys = in.readStrings();
+            String[] names = in.readStrings();
+            IntBuffer nameFlags = in.ints(names.length);
+            IntBuffer offsets = in.ints(names.length + 1);
+            IntBuffer indexes = in.ints(offsets.get(names.length));
+            
+            // 路由表常驻堆内，不保留映射缓冲区
+            Map<String, Integer> flags = new HashMap<>(names.length * 2);
+            Map<String, int[]> partitions = new HashMap<>(names.length * 2);
+            for (int i = 0; i < names.length; i++) {
+                flags.put(names[i], nameFlags.get(i));
+                int[] nameIndexes = new int[offsets.get(i + 1) - offsets.get(i)];
+                indexes.get(offsets.get(i), nameIndexes);
+                partitions.put(names[i], nameIndexes);
+            }
+            return new Router(keys, flags, partitions);
+        }
+    }
+    
+    /**
+     * 命令行入口：由行政区划CSV生成分区目录
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("用法: PartitionedAddressIndex <csv文件> <分区目录>");
+            System.exit(1);
+        }
+        long start = System.nanoTime();
+        List<AdministrativeDivision> divisions;
+        try (InputStream is = Files.newInputStream(Paths.get(args[0]))) {
+            divisions = DivisionCsvReader.read(is);
+        }
+        Path output = Paths.get(args[1]);
+        write(divisions, output);
+        System.out.printf("已写入 %d 条行政区划到 %s（耗时 %d ms）%n", divisions.size(), output,
+                (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,114 @@
+package com.petvetai.app.util.address;
+
+/**
+ * 定长的（序号, 分数）小顶堆
+ * 用两个基本类型数组保存当前最好的 k 个候选，堆顶是其中最差的一个：分数最低，同分时序号最大。
+ * 候选按序号升序送入时，同分的后来者不会替换已有结果，与逐个比较取最高分（同分取序号小的）的结果一致
+ *
+ * @author PetVetAI
+ */
+final class ScoredOrdinalHeap {
+    
+    private final int[] ordinals;
+    private final double[] scores;
+    private int size;
+    
+    ScoredOrdinalHeap(int capacity) {
+        this.ordinals = new int[capacity];
+        this.scores = new double[capacity];
+    }
+    
+    int size() {
+        return size;
+    }
+    
+    boolean isFull() {
+        return size == ordinals.length;
+    }
+    
+    /**
+     * 当前第 k 名的分数，堆未满时任何候选都能进入，返回负无穷
+     */
+    double threshold() {
+        return isFull() ? scores[0] : Double.NEGATIVE_INFINITY;
+    }
+    
+    /**
+     * 尝试加入候选，堆满时只有比堆顶更好的候选才会替换堆顶
+     */
+    void offer(int ordinal, double score) {
+        if (size < ordinals.length) {
+            ordinals[size] = ordinal;
+            scores[size] = score;
+            siftUp(size++);
+        } else if (worse(ordinals[0], scores[0], ordinal, score)) {
+            ordinals[0] = ordinal;
+            scores[0] = score;
+            siftDown(0);
+        }
+    }
+    
+    /**
+     * 依次取出全部候选，结果按分数降序（同分序号升序）写入数组，堆随之清空
+     */
+    int drain(int[] sortedOrdinals, double[] sortedScores) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            sortedOrdinals[i] = ordinals[0];
+            sortedScores[i] = scores[0];
+            size--;
+            if (size > 0) {
+                ordinals[0] = ordinals[size];
+                scores[0] = scores[size];
+                siftDown(0);
+            }
+        }
+        return count;
+    }
+    
+    /**
+     * a 是否比 b 差：分数更低，或同分时序号更大
+     */
+    private static boolean worse(int ordinalA, double scoreA, int ordinalB, double scoreB) {
+        return scoreA < scoreB || scoreA == scoreB && ordinalA > ordinalB;
+    }
+    
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(ordinals[i], scores[i], ordinals[parent], scores[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+    
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                break;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && worse(ordinals[right], scores[right], ordinals[left], scores[left])) {
+                worst = right;
+            }
+            if (!worse(ordinals[worst], scores[worst], ordinals[i], scores[i])) {
+                break;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+    
+    private void swap(int i, int j) {
+        int ordinal = ordinals[i];
+        ordinals[i] = ordinals[j];
+        ordinals[j] = ordinal;
+        double score = scores[i];
+        scores[i] = scores[j];
+        scores[j] = score;
+    }
+}
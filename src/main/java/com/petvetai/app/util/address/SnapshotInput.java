@@ -0,0 +1,109 @@
+package com.petvetai.app.util.address;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 索引快照读取器
+ * 按 {@link SnapshotOutput} 的布局顺序读取，数组和位图都是底层缓冲区（通常是内存映射文件）的视图，不复制数据
+ *
+ * @author PetVetAI
+ */
+final class SnapshotInput {
+    
+    private final ByteBuffer buffer;
+    private int position;
+    
+    SnapshotInput(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+    
+    int readInt() {
+        int value = buffer.getInt(position);
+        position += Integer.BYTES;
+        return value;
+    }
+    
+    long readLong() {
+        long value = buffer.getLong(position);
+        position += Long.BYTES;
+        return value;
+    }
+    
+    ByteBuffer bytes(int count) {
+        ByteBuffer view = buffer.slice(position, count);
+        position += count;
+        align();
+        return view;
+    }
+    
+    CharBuffer chars(int count) {
+        CharBuffer view = buffer.slice(position, count * Character.BYTES).asCharBuffer();
+        position += count * Character.BYTES;
+        align();
+        return view;
+    }
+    
+    IntBuffer ints(int count) {
+        IntBuffer view = buffer.slice(position, count * Integer.BYTES).asIntBuffer();
+        position += count * Integer.BYTES;
+        align();
+        return view;
+    }
+    
+    LongBuffer longs(int count) {
+        LongBuffer view = buffer.slice(position, count * Long.BYTES).asLongBuffer();
+        position += count * Long.BYTES;
+        align();
+        return view;
+    }
+    
+    /**
+     * 读取字符串池并解码为字符串数组
+     */
+    String[] readStrings() {
+        int count = readInt();
+        IntBuffer offsets = ints(count + 1);
+        int base = position;
+        String[] strings = new String[count];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < count; i++) {
+            int start = offsets.get(i);
+            int length = offsets.get(i + 1) - start;
+            if (bytes.length < length) {
+                bytes = new byte[Math.max(length, bytes.length * 2)];
+            }
+            buffer.get(base + start, bytes, 0, length);
+            strings[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+        position = base + offsets.get(count);
+        align();
+        return strings;
+    }
+    
+    /**
+     * 以 [offset, offset + length) 处的序列化数据创建只读位图视图，offset 相对于 base
+     */
+    ImmutableRoaringBitmap bitmap(int base, int offset, int length) {
+        return new ImmutableRoaringBitmap(buffer.slice(base + offset, length));
+    }
+    
+    /**
+     * 跳过 length 字节，返回跳过前的位置
+     */
+    int skip(int length) {
+        int start = position;
+        position += length;
+        align();
+        return start;
+    }
+    
+    private void align() {
+        position = (position + SnapshotOutput.ALIGNMENT - 1) / SnapshotOutput.ALIGNMENT * SnapshotOutput.ALIGNMENT;
+    }
+}
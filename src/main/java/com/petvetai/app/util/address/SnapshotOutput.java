@@ -0,0 +1,134 @@
+package com.petvetai.app.util.address;
+
+import org.roaringbitmap.buffer.ImmutableRoaringBitmap;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * 索引快照写入器
+ * 按大端序顺序写入，每个数组写完后补齐到 8 字节边界，
+ * 使 {@link SnapshotInput} 在内存映射文件上创建的数组视图都是对齐的
+ *
+ * @author PetVetAI
+ */
+final class SnapshotOutput implements Closeable {
+    
+    static final int ALIGNMENT = 8;
+    
+    private final DataOutputStream out;
+    private long position;
+    
+    SnapshotOutput(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 1 << 16));
+    }
+    
+    void writeInt(int value) throws IOException {
+        out.writeInt(value);
+        position += Integer.BYTES;
+    }
+    
+    void writeLong(long value) throws IOException {
+        out.writeLong(value);
+        position += Long.BYTES;
+    }
+    
+    /**
+     * 写入缓冲区 [0, limit) 的全部字符
+     */
+    void writeChars(CharBuffer chars) throws IOException {
+        for (int i = 0; i < chars.limit(); i++) {
+            out.writeChar(chars.get(i));
+        }
+        position += (long) chars.limit() * Character.BYTES;
+        align();
+    }
+    
+    /**
+     * 写入缓冲区 [0, limit) 的全部整数
+     */
+    void writeInts(IntBuffer ints) throws IOException {
+        for (int i = 0; i < ints.limit(); i++) {
+            out.writeInt(ints.get(i));
+        }
+        position += (long) ints.limit() * Integer.BYTES;
+        align();
+    }
+    
+    /**
+     * 写入缓冲区 [0, limit) 的全部字节
+     */
+    void writeBytes(ByteBuffer bytes) throws IOException {
+        byte[] chunk = new byte[Math.min(bytes.limit(), 1 << 16)];
+        for (int i = 0; i < bytes.limit(); i += chunk.length) {
+            int length = Math.min(chunk.length, bytes.limit() - i);
+            bytes.get(i, chunk, 0, length);
+            out.write(chunk, 0, length);
+        }
+        position += bytes.limit();
+        align();
+    }
+    
+    /**
+     * 写入 count 个长整数，values 不足的部分补 0
+     */
+    void writeLongs(long[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            out.writeLong(i < values.length ? values[i] : 0L);
+        }
+        position += (long) count * Long.BYTES;
+        align();
+    }
+    
+    /**
+     * 写入字符串池：数量、UTF-8 字节偏移（数量 + 1 个），随后是全部字节
+     */
+    void writeStrings(List<String> strings) throws IOException {
+        byte[][] encoded = new byte[strings.size()][];
+        int[] offsets = new int[strings.size() + 1];
+        for (int i = 0; i < encoded.length; i++) {
+            encoded[i] = strings.get(i).getBytes(StandardCharsets.UTF_8);
+            offsets[i + 1] = offsets[i] + encoded[i].length;
+        }
+        writeInt(strings.size());
+        writeInts(IntBuffer.wrap(offsets));
+        for (byte[] bytes : encoded) {
+            out.write(bytes);
+            position += bytes.length;
+        }
+        align();
+    }
+    
+    /**
+     * 写入 Roaring 位图的标准序列化格式，返回写入的字节数
+     */
+    int writeBitmap(ImmutableRoaringBitmap bitmap) throws IOException {
+        int size = bitmap.serializedSizeInBytes();
+        bitmap.serialize(out);
+        position += size;
+        return size;
+    }
+    
+    /**
+     * 补齐到 {@link #ALIGNMENT} 字节边界
+     */
+    void align() throws IOException {
+        while (position % ALIGNMENT != 0) {
+            out.writeByte(0);
+            position++;
+        }
+    }
+    
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
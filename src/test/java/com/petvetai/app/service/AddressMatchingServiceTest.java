@@ -1,12 +1,23 @@
 package com.petvetai.app.service;
 
+import com.petvetai.app.domain.address.HouseholdAddress;
 import com.petvetai.app.domain.address.MatchResult;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.ActiveProfiles;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 /**
@@ -22,6 +33,76 @@ class AddressMatchingServiceTest {
     @Autowired
     private AddressMatchingService addressMatchingService;
     
+    @BeforeEach
+    void awaitIndex() throws InterruptedException {
+        // 索引在后台加载，等待首个索引发布
+        assertTrue(addressMatchingService.awaitReady(60, TimeUnit.SECONDS), "地址索引应在超时前就绪");
+    }
+    
+    @Test
+    @DisplayName("测试索引未就绪时快速返回预热中结果")
+    void testWarmingResult(@TempDir Path tempDir) throws InterruptedException {
+        // 数据文件不存在，索引始终无法加载，服务保持未就绪
+        AddressMatchingService warming = new AddressMatchingService(100, 1024 * 1024, "",
+                tempDir.resolve("missing.csv").toString(), "", 1_000_000, "", false);
+        try {
+            assertFalse(warming.awaitReady(100, TimeUnit.MILLISECONDS), "数据文件不存在时不应就绪");
+            MatchResult result = warming.matchAddress("浙江省杭州市余杭区仓前街道");
+            assertNull(result.getCode(), "未就绪时不应返回编码");
+            assertTrue(result.isAbnormal(), "未就绪结果应标记为异常");
+            assertEquals(AddressMatchingService.INDEX_WARMING, result.getAbnormalReason());
+            assertNull(warming.matchAddress(" "), "空地址应返回null");
+            assertThrows(IllegalStateException.class, () -> warming.applyDelta(List.of()), "未就绪时不应接受增量变更");
+            
+            // 首次加载失败后记录失败原因，等待定时重试
+            for (int i = 0; i < 100 && warming.getInitialLoadFailure() == null; i++) {
+                Thread.sleep(50);
+            }
+            assertNotNull(warming.getInitialLoadFailure(), "首次加载失败的原因应被记录");
+            assertFalse(warming.isReady());
+        } finally {
+            warming.destroy();
+        }
+    }
+    
+    @Test
+    @DisplayName("测试户级数据变更只重建户级索引")
+    void testHouseholdReload(@TempDir Path tempDir) throws IOException, InterruptedException {
+        Path households = tempDir.resolve("households.csv");
+        Files.writeString(households, "H001,33011,文一西路,969号,3幢,2单元,501室\n");
+        AddressMatchingService service = new AddressMatchingService(100, 1024 * 1024, "", "", "", 1_000_000,
+                households.toString(), false);
+        try {
+            assertTrue(service.awaitReady(60, TimeUnit.SECONDS));
+            String address = "浙江省杭州市余杭区仓前街道文一西路969号3幢2单元502室";
+            assertEquals("H001", awaitHousehold(service, "浙江省杭州市余杭区仓前街道文一西路969号3幢2单元501室"));
+            assertNull(service.matchHousehold(address).getHousehold());
+            long generation = service.getIndexGeneration();
+            
+            Files.writeString(households, "H001,33011,文一西路,969号,3幢,2单元,501室\n"
+                    + "H002,33011,文一西路,969号,3幢,2单元,502室\n");
+            service.reloadHouseholdIndex();
+            assertEquals("H002", awaitHousehold(service, address));
+            assertEquals(generation, service.getIndexGeneration(), "户级数据变更不应重建行政区划索引");
+        } finally {
+            service.destroy();
+        }
+    }
+    
+    /**
+     * 等待户级索引加载到能匹配该地址，超时返回 null
+     */
+    private static String awaitHousehold(AddressMatchingService service, String address) throws InterruptedException {
+        for (int i = 0; i < 200; i++) {
+            HouseholdAddress household = service.matchHousehold(address).getHousehold();
+            if (household != null) {
+                return household.getCode();
+            }
+            Thread.sleep(50);
+        }
+        return null;
+    }
+    
     @Test
     @DisplayName("测试完整地址匹配")
     void testFullAddressMatch() {
@@ -130,5 +211,23 @@ class AddressMatchingServiceTest {
         assertNotNull(result, "匹配结果不应为空");
         assertEquals("31001", result.getCode(), "应该匹配到31001");
     }
+    
+    @Test
+    @DisplayName("测试批量地址匹配")
+    void testBatchMatch() {
+        List<String> addresses = Arrays.asList(
+                "浙江省杭州市余杭区仓前街道", null, "浙江省杭州市余杭区五常街道", "北京市海淀区中关村街道");
+        
+        List<MatchResult> results = addressMatchingService.matchAddresses(addresses);
+        
+        assertEquals(addresses.size(), results.size(), "结果数量应与输入一致");
+        assertEquals("33011", results.get(0).getCode());
+        assertNull(results.get(1), "空地址应返回null且不影响其他地址");
+        assertEquals("33012", results.get(2).getCode());
+        assertEquals("11001", results.get(3).getCode());
+        
+        List<MatchResult> streamed = addressMatchingService.matchAddresses(addresses.stream())
+                .collect(Collectors.toList());
+        assertEquals(results, streamed, "流式匹配结果应与批量匹配一致");
+    }
 }
-
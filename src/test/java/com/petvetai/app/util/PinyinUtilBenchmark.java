@@ -0,0 +1,157 @@
+package com.petvetai.app.util;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 拼音查找基准测试：查找表 vs 原 pinyin4j 逐字查询；多音字密集名称的同音判断：读音网格 vs 展开全部组合
+ * 运行方式：mvn test-compile 后执行本类的 main 方法
+ *
+ * @author PetVetAI
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PinyinUtilBenchmark {
+
+    private static final String[] LEVELS = {
+            "浙江省", "杭州市", "余杭区", "仓前街道", "五常街道", "西湖区", "蒋村街道",
+            "北京市", "海淀区", "中关村街道", "上海市", "黄浦区", "外滩街道"
+    };
+
+    private static final String INPUT = "浙江省杭州市与杭区仓前街道";
+
+    /**
+     * 多音字密集的名称：逐字读音数为 4、3、3、3、3、3、4、3、3、3，共 104976 种拼音组合
+     */
+    private static final String POLYPHONE_NAME = "和行差参着单和行差参";
+
+    /**
+     * 只有最后一个字不同音（叁 san），首末字母相同，必须走完整个网格才能否定
+     */
+    private static final String POLYPHONE_OTHER = "河行差参着单和行差叁";
+
+    private HanyuPinyinOutputFormat format;
+
+    @Setup
+    public void setUp() {
+        format = new HanyuPinyinOutputFormat();
+        format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        format.setVCharType(HanyuPinyinVCharType.WITH_V);
+        // 触发查找表初始化，避免计入测量
+        PinyinUtil.getPinyin(INPUT);
+    }
+
+    @Benchmark
+    public void homophoneScanTable(Blackhole bh) {
+        for (String level : LEVELS) {
+            bh.consume(PinyinUtil.isHomophone("与杭区", level));
+        }
+    }
+
+    @Benchmark
+    public void homophoneScanPinyin4j(Blackhole bh) {
+        for (String level : LEVELS) {
+            Set<String> pinyin1 = legacyCombinations("与杭区");
+            pinyin1.retainAll(legacyCombinations(level));
+            bh.consume(!pinyin1.isEmpty());
+        }
+    }
+
+    @Benchmark
+    public boolean polyphoneLattice() {
+        return PinyinUtil.isHomophone(POLYPHONE_NAME, POLYPHONE_OTHER);
+    }
+
+    @Benchmark
+    public boolean polyphoneCombinations() {
+        Set<String> pinyin1 = PinyinUtil.getAllPinyinCombinations(POLYPHONE_NAME);
+        pinyin1.retainAll(PinyinUtil.getAllPinyinCombinations(POLYPHONE_OTHER));
+        return !pinyin1.isEmpty();
+    }
+
+    @Benchmark
+    public String getPinyinTable() {
+        return PinyinUtil.getPinyin(INPUT);
+    }
+
+    @Benchmark
+    public String getPinyinPinyin4j() {
+        StringBuilder sb = new StringBuilder();
+        for (char c : INPUT.toCharArray()) {
+            Set<String> pinyins = legacyPinyinSet(c);
+            sb.append(pinyins.isEmpty() ? String.valueOf(c) : pinyins.iterator().next());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 原实现：每次调用 pinyin4j 并新建 HashSet
+     */
+    private Set<String> legacyPinyinSet(char c) {
+        Set<String> pinyinSet = new HashSet<>();
+        try {
+            String[] pinyins = PinyinHelper.toHanyuPinyinStringArray(c, format);
+            if (pinyins != null) {
+                for (String pinyin : pinyins) {
+                    pinyinSet.add(pinyin);
+                }
+            }
+        } catch (Exception e) {
+            // 非汉字字符，返回空集合
+        }
+        return pinyinSet;
+    }
+
+    /**
+     * 原实现：递归字符串拼接生成所有组合
+     */
+    private Set<String> legacyCombinations(String text) {
+        Set<String> result = new HashSet<>();
+        char[] chars = text.toCharArray();
+        @SuppressWarnings("unchecked")
+        Set<String>[] pinyinSets = new Set[chars.length];
+        for (int i = 0; i < chars.length; i++) {
+            pinyinSets[i] = legacyPinyinSet(chars[i]);
+            if (pinyinSets[i].isEmpty()) {
+                pinyinSets[i].add(String.valueOf(chars[i]));
+            }
+        }
+        legacyGenerate(pinyinSets, 0, "", result);
+        return result;
+    }
+
+    private void legacyGenerate(Set<String>[] pinyinSets, int index, String current, Set<String> result) {
+        if (index >= pinyinSets.length) {
+            result.add(current);
+            return;
+        }
+        for (String pinyin : pinyinSets[index]) {
+            legacyGenerate(pinyinSets, index + 1, current + pinyin, result);
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(PinyinUtilBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,83 @@
+package com.petvetai.app.util;
+
+import net.sourceforge.pinyin4j.PinyinHelper;
+import net.sourceforge.pinyin4j.format.HanyuPinyinCaseType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinOutputFormat;
+import net.sourceforge.pinyin4j.format.HanyuPinyinToneType;
+import net.sourceforge.pinyin4j.format.HanyuPinyinVCharType;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 拼音工具类测试
+ *
+ * @author PetVetAI
+ */
+@DisplayName("拼音工具类测试")
+class PinyinUtilTest {
+    
+    @Test
+    @DisplayName("测试查找表与 pinyin4j 读音一致")
+    void testTableMatchesPinyin4j() throws Exception {
+        HanyuPinyinOutputFormat format = new HanyuPinyinOutputFormat();
+        format.setCaseType(HanyuPinyinCaseType.LOWERCASE);
+        format.setToneType(HanyuPinyinToneType.WITHOUT_TONE);
+        format.setVCharType(HanyuPinyinVCharType.WITH_V);
+        
+        for (char c = PinyinTable.FIRST; c <= PinyinTable.LAST; c++) {
+            String[] expected = PinyinHelper.toHanyuPinyinStringArray(c, format);
+            Set<String> expectedSet = expected == null ? Set.of() : new HashSet<>(Arrays.asList(expected));
+            assertEquals(expectedSet, PinyinUtil.getPinyinSet(c), "读音不一致: " + c);
+            if (expected != null && expected.length > 0) {
+                assertEquals(expected[0], PinyinTable.reading(c, 0), "首选读音不一致: " + c);
+            }
+        }
+    }
+    
+    @Test
+    @DisplayName("测试多音字组合与同音判断")
+    void testCombinationsAndHomophone() {
+        assertTrue(PinyinUtil.getAllPinyinCombinations("与杭").contains("yuhang"));
+        assertTrue(PinyinUtil.isHomophone("与杭区", "余杭区"));
+        assertFalse(PinyinUtil.isHomophone("西湖区", "余杭区"));
+        // 音节切分不同但拼接相同
+        assertTrue(PinyinUtil.isHomophone("西安", "先"));
+        assertFalse(PinyinUtil.isHomophone("", ""));
+        assertEquals("yuhangqu1hao", PinyinUtil.getPinyin("余杭区1号"));
+    }
+    
+    @Test
+    @DisplayName("测试模糊拼音和首字母缩写")
+    void testFuzzyPinyinAndInitials() {
+        assertEquals("zong", PinyinUtil.toFuzzySyllable("zhong"));
+        assertEquals("lan", PinyinUtil.toFuzzySyllable("nan"));
+        assertEquals("sen", PinyinUtil.toFuzzySyllable("sheng"));
+        assertTrue(PinyinUtil.getFuzzyPinyinCombinations("南京", Integer.MAX_VALUE).contains("lanjin"));
+        assertEquals("lanjin", PinyinUtil.toFuzzyPinyin("nanjing"));
+        assertEquals("lanjin", PinyinUtil.toFuzzyPinyin("LanJin"));
+        assertNull(PinyinUtil.toFuzzyPinyin("xyz"));
+        assertTrue(PinyinUtil.getInitialsCombinations("杭州市").contains("hzs"));
+    }
+    
+    @Test
+    @DisplayName("测试读音网格同音判断与展开组合一致")
+    void testLatticeMatchesCombinations() {
+        String[] names = {"和行差参", "河行差参", "和行差叁", "合肥", "和肥", "西安", "先", "长乐", "常乐", "A1号"};
+        for (String name1 : names) {
+            for (String name2 : names) {
+                Set<String> expected = PinyinUtil.getAllPinyinCombinations(name1);
+                expected.retainAll(PinyinUtil.getAllPinyinCombinations(name2));
+                assertEquals(!expected.isEmpty(), PinyinUtil.isHomophone(name1, name2), name1 + " / " + name2);
+            }
+        }
+        // 10 个多音字共 104976 种组合，网格判断不展开组合
+        assertFalse(PinyinUtil.isHomophone("和行差参着单和行差参", "河行差参着单和行差叁"));
+        assertTrue(PinyinUtil.isHomophone("和行差参着单和行差参", "河行差参着单和行差参"));
+    }
+}
@@ -0,0 +1,60 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.util.List;
+
+/**
+ * 地址索引内存占用与查询延迟评估
+ * 运行方式：mvn test-compile 后执行本类的 main 方法，参数为数据行数（默认 1000000），建议 -Xmx4g
+ *
+ * @author PetVetAI
+ */
+public class AddressIndexFootprint {
+    
+    public static void main(String[] args) {
+        int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<AdministrativeDivision> divisions = SyntheticDivisions.generate(rows);
+        
+        long before = usedHeap();
+        long start = System.nanoTime();
+        AddressIndex index = AddressIndex.build(divisions);
+        long buildMillis = (System.nanoTime() - start) / 1_000_000;
+        long after = usedHeap();
+        
+        System.out.printf("rows=%d build=%dms indexHeap=%.1fMB%n",
+                divisions.size(), buildMillis, (after - before) / 1024.0 / 1024.0);
+        
+        measure("prefix(street)", index, divisions, d -> d.getStreet());
+        measure("prefix(full)", index, divisions, AdministrativeDivision::getFullAddress);
+        measure("prefix(district)", index, divisions, d -> d.getDistrict());
+        
+        // 保证测量期间索引不被回收
+        System.out.println(index.getDivision(divisions.get(0).getCode()) != null);
+    }
+    
+    private static void measure(String name, AddressIndex index, List<AdministrativeDivision> divisions,
+                                java.util.function.Function<AdministrativeDivision, String> key) {
+        int samples = 20_000;
+        long sink = 0;
+        for (int i = 0; i < samples; i++) {
+            sink += index.searchByPrefix(key.apply(divisions.get((i * 7919) % divisions.size()))).length();
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < samples; i++) {
+            sink += index.searchByPrefix(key.apply(divisions.get((i * 104729) % divisions.size()))).length();
+        }
+        long avgNanos = (System.nanoTime() - start) / samples;
+        System.out.printf("%-18s avg=%.2fus (sink=%d)%n", name, avgNanos / 1000.0, sink);
+    }
+    
+    private static long usedHeap() {
+        MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return memory.getHeapMemoryUsage().getUsed();
+    }
+}
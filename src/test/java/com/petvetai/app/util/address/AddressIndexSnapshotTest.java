@@ -0,0 +1,92 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.MatchResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 地址索引快照测试
+ *
+ * @author PetVetAI
+ */
+@DisplayName("地址索引快照测试")
+class AddressIndexSnapshotTest {
+    
+    private static final String[] ADDRESSES = {
+            "浙江省杭州市余杭区仓前街道",
+            "浙江省杭州市与杭区仓前街道",
+            "余杭区仓前街道",
+            "北京北京市海淀区浙江省杭州市余杭区五常街道",
+            "上海市黄浦区外滩街道",
+            "河北省石家庄市长安区建北街道"
+    };
+    
+    @TempDir
+    Path tempDir;
+    
+    @Test
+    @DisplayName("测试快照加载后匹配结果与构建的索引一致")
+    void testSnapshotRoundTrip() throws IOException {
+        AddressIndex built = AddressIndex.build(SyntheticDivisions.generate(5000));
+        
+        Path snapshot = tempDir.resolve("address-index.snap");
+        AddressIndexSnapshot.write(built, snapshot);
+        AddressIndex loaded = AddressIndexSnapshot.read(snapshot);
+        
+        assertEquals(built.size(), loaded.size());
+        assertNotEquals(built.getGeneration(), loaded.getGeneration());
+        for (int ordinal = 0; ordinal < built.size(); ordinal += 97) {
+            assertEquals(built.getDivision(ordinal), loaded.getDivision(ordinal));
+            assertEquals(ordinal, loaded.getOrdinal(built.getDivision(ordinal).getCode()));
+        }
+        
+        AddressMatcher builtMatcher = new AddressMatcher(built);
+        AddressMatcher loadedMatcher = new AddressMatcher(loaded);
+        for (int ordinal = 0; ordinal < built.size(); ordinal += 499) {
+            String address = built.getDivision(ordinal).getFullAddress();
+            assertEquals(builtMatcher.match(address), loadedMatcher.match(address));
+        }
+        for (String address : ADDRESSES) {
+            MatchResult expected = builtMatcher.match(address);
+            assertEquals(expected, loadedMatcher.match(address), address);
+        }
+    }
+    
+    @Test
+    @DisplayName("测试并行构建的快照与单线程构建逐字节相同")
+    void testParallelBuildDeterministic() throws IOException {
+        List<AdministrativeDivision> divisions = SyntheticDivisions.generate(20000);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            Path sequential = tempDir.resolve("sequential.snap");
+            Path forked = tempDir.resolve("parallel.snap");
+            AddressIndexSnapshot.write(AddressIndex.build(divisions, single), sequential);
+            AddressIndexSnapshot.write(AddressIndex.build(divisions, parallel), forked);
+            
+            assertArrayEquals(Files.readAllBytes(sequential), Files.readAllBytes(forked));
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+        }
+    }
+    
+    @Test
+    @DisplayName("测试非快照文件被拒绝")
+    void testRejectInvalidFile() throws IOException {
+        Path file = tempDir.resolve("invalid.snap");
+        Files.write(file, new byte[64]);
+        
+        assertThrows(IOException.class, () -> AddressIndexSnapshot.read(file));
+    }
+}
@@ -0,0 +1,106 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.HouseholdAddress;
+import com.petvetai.app.domain.address.MatchResult;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 地址匹配基准测试，附带 GC 分析器输出每次匹配的分配量（gc.alloc.rate.norm）
+ * 户级用例：每 10 个街道生成一组户（5 幢 x 2 单元 x 4 室），分别测量匹配到户的完整流程和匹配到街道后的下降一步
+ * 运行方式：mvn test-compile 后执行本类的 main 方法
+ *
+ * @author PetVetAI
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AddressMatcherBenchmark {
+    
+    @Param({"100000"})
+    public int rows;
+    
+    private AddressMatcher matcher;
+    private HouseholdIndex householdIndex;
+    
+    private String fullAddress;
+    private String withoutProvince;
+    private String homophone;
+    private String household;
+    private MatchResult householdDivision;
+    
+    @Setup
+    public void setUp() {
+        List<AdministrativeDivision> divisions = SyntheticDivisions.generate(rows);
+        AddressIndex index = AddressIndex.build(divisions);
+        matcher = new AddressMatcher(index);
+        
+        AdministrativeDivision division = divisions.get(rows / 2);
+        fullAddress = division.getFullAddress();
+        withoutProvince = division.getCity() + division.getDistrict() + division.getStreet();
+        // 把区县名称的第一个字换成同音字
+        homophone = division.getProvince() + division.getCity() + "与" + division.getDistrict().substring(1)
+                + division.getStreet();
+        
+        List<HouseholdAddress> households = new ArrayList<>();
+        for (int i = 0; i < rows; i += 10) {
+            String code = divisions.get(i).getCode();
+            for (int building = 1; building <= 5; building++) {
+                for (int unit = 1; unit <= 2; unit++) {
+                    for (int room = 101; room <= 104; room++) {
+                        households.add(new HouseholdAddress(code + "-" + building + unit + room, code, "文一西路",
+                                "969号", building + "幢", unit + "单元", room + "室"));
+                    }
+                }
+            }
+        }
+        householdIndex = HouseholdIndex.build(households);
+        household = fullAddress + "文一西路969号3幢2单元102室";
+        householdDivision = matcher.match(household);
+    }
+    
+    @Benchmark
+    public MatchResult matchFullAddress() {
+        return matcher.match(fullAddress);
+    }
+    
+    @Benchmark
+    public MatchResult matchWithoutProvince() {
+        return matcher.match(withoutProvince);
+    }
+    
+    @Benchmark
+    public MatchResult matchHomophone() {
+        return matcher.match(homophone);
+    }
+    
+    @Benchmark
+    public HouseholdAddress matchHousehold() {
+        return householdIndex.match(matcher.match(household), household);
+    }
+    
+    @Benchmark
+    public HouseholdAddress descendHousehold() {
+        return householdIndex.match(householdDivision, household);
+    }
+    
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(AddressMatcherBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -1,12 +1,15 @@
 package com.petvetai.app.util.address;
 
 import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.DivisionChange;
 import com.petvetai.app.domain.address.MatchResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -24,9 +27,6 @@ class AddressMatcherStandaloneTest {
     
     @BeforeEach
     void setUp() {
-        index = new AddressIndex();
-        matcher = new AddressMatcher(index);
-        
         // 准备测试数据
         List<AdministrativeDivision> divisions = new ArrayList<>();
         divisions.add(new AdministrativeDivision("33011", "浙江省", "杭州市", "余杭区", "仓前街道"));
@@ -35,7 +35,8 @@ class AddressMatcherStandaloneTest {
         divisions.add(new AdministrativeDivision("11001", "北京市", "北京市", "海淀区", "中关村街道"));
         divisions.add(new AdministrativeDivision("31001", "上海市", "上海市", "黄浦区", "外滩街道"));
         
-        index.buildIndex(divisions);
+        index = AddressIndex.build(divisions);
+        matcher = new AddressMatcher(index);
     }
     
     @Test
@@ -126,5 +127,148 @@ class AddressMatcherStandaloneTest {
         assertNotNull(result);
         assertEquals("31001", result.getCode());
     }
+    
+    @Test
+    @DisplayName("测试省略后缀和颠倒顺序的地址片段")
+    void testNgramRecall() {
+        MatchResult result = matcher.match("余杭仓前");
+        assertNotNull(result);
+        assertEquals("33011", result.getCode());
+        
+        assertTrue(index.searchByNgram("仓前街道余杭区").contains(index.getOrdinal("33011")));
+        assertFalse(index.searchByNgram("余杭仓前").contains(index.getOrdinal("33012")));
+        assertTrue(index.searchByNgram("不存在").isEmpty());
+    }
+    
+    @Test
+    @DisplayName("测试形近字和漏字的地址匹配")
+    void testTypoMatch() {
+        int ordinal = index.getOrdinal("33011");
+        assertTrue(index.searchByEditDistance("仑前街道").contains(ordinal));
+        assertTrue(index.searchByEditDistance("仓前道").contains(ordinal));
+        assertFalse(index.searchByEditDistance("仑钱街道").contains(ordinal));
+        
+        MatchResult result = matcher.match("浙江省杭州市余杭区仑前街道");
+        assertNotNull(result);
+        assertEquals("33011", result.getCode());
+        assertTrue(result.getScore() > matcher.matchTopK("浙江省杭州市余杭区仑前街道", 2).get(1).getScore());
+    }
+    
+    @Test
+    @DisplayName("测试模糊拼音和首字母匹配")
+    void testFuzzyPinyinMatch() {
+        int ordinal = index.getOrdinal("33011");
+        assertTrue(index.searchByPinyin("hzs").contains(ordinal));
+        assertTrue(index.searchByPinyin("HZ").contains(ordinal));
+        assertTrue(index.searchByPinyin("hangzou").contains(ordinal));
+        assertTrue(index.searchByPinyin("cangqianjiedao").contains(ordinal));
+        assertFalse(index.searchByPinyin("hzs").contains(index.getOrdinal("11001")));
+        assertTrue(index.searchByPinyin("xyz").isEmpty());
+    }
+    
+    @Test
+    @DisplayName("测试前K个匹配结果")
+    void testMatchTopK() {
+        List<MatchResult> results = matcher.matchTopK("浙江省杭州市余杭区仓前街道", 3);
+        
+        assertEquals(3, results.size());
+        assertEquals("33011", results.get(0).getCode());
+        assertEquals("33012", results.get(1).getCode());
+        for (int i = 1; i < results.size(); i++) {
+            assertTrue(results.get(i - 1).getScore() >= results.get(i).getScore());
+        }
+        assertEquals(matcher.match("浙江省杭州市余杭区仓前街道").getScore(), results.get(0).getScore());
+        assertTrue(matcher.matchTopK("", 3).isEmpty());
+    }
+    
+    @Test
+    @DisplayName("测试匹配结果缓存")
+    void testMatchResultCache() {
+        MatchResultCache cache = new MatchResultCache(100, 1024 * 1024);
+        AddressMatcher cachedMatcher = new AddressMatcher(index, cache);
+        
+        MatchResult first = cachedMatcher.match("浙江省杭州市余杭区仓前街道");
+        // 缓存的结果只读，调用方无法修改缓存和索引
+        assertThrows(UnsupportedOperationException.class, () -> first.setAbnormal(true));
+        assertThrows(UnsupportedOperationException.class, () -> first.getDivision().setStreet("五常街道"));
+        
+        // 标准化后相同的地址命中缓存，直接返回缓存中的对象
+        MatchResult second = cachedMatcher.match("浙江省 杭州市，余杭区仓前街道");
+        assertEquals(1, cache.missCount());
+        assertEquals(1, cache.hitCount());
+        assertSame(first, second);
+        assertEquals("33011", second.getCode());
+        assertFalse(second.isAbnormal());
+        assertEquals("仓前街道", second.getDivision().getStreet());
+        assertEquals("仓前街道", index.getDivision("33011").getStreet());
+        assertEquals(new AddressMatcher(index).match("浙江省杭州市余杭区仓前街道"), second);
+        
+        // 索引重建后旧条目失效
+        AddressIndex rebuilt = AddressIndex.build(new ArrayList<>(index.getAllDivisions()));
+        new AddressMatcher(rebuilt, cache).match("浙江省杭州市余杭区仓前街道");
+        assertEquals(2, cache.missCount());
+    }
+    
+    @Test
+    @DisplayName("测试增量变更")
+    void testApplyDelta() {
+        AddressIndex updated = index.applyDelta(Arrays.asList(
+                DivisionChange.update(new AdministrativeDivision("33012", "浙江省", "杭州市", "余杭区", "良渚街道")),
+                DivisionChange.add(new AdministrativeDivision("33014", "浙江省", "杭州市", "余杭区", "闲林街道")),
+                DivisionChange.remove("33013")));
+        AddressMatcher updatedMatcher = new AddressMatcher(updated);
+        
+        assertTrue(updated.getGeneration() > index.getGeneration());
+        assertEquals(5, updated.size());
+        assertEquals("33012", updatedMatcher.match("浙江省杭州市余杭区良渚街道").getCode());
+        assertEquals("33014", updatedMatcher.match("浙江省杭州市余杭区闲林街道").getCode());
+        assertNull(updated.getDivision("33013"));
+        assertNotEquals("33013", updatedMatcher.match("浙江省杭州市西湖区蒋村街道").getCode());
+        List<Integer> ordinals = new ArrayList<>();
+        updated.searchExact("良渚街道").forEach(ordinals::add);
+        assertEquals(Collections.singletonList(updated.getOrdinal("33012")), ordinals);
+        
+        // 原索引不受影响
+        assertEquals(5, index.size());
+        assertEquals("五常街道", index.getDivision("33012").getStreet());
+        assertEquals("33013", matcher.match("浙江省杭州市西湖区蒋村街道").getCode());
+        
+        // 在增量版本上继续变更，合并后与全量构建一致
+        AddressIndex next = updated.applyDelta(Collections.singletonList(DivisionChange.remove("33014")));
+        assertEquals(4, next.size());
+        assertNull(next.getDivision("33014"));
+        assertEquals("良渚街道", next.getDivision("33012").getStreet());
+        assertEquals(next.size(), next.compact().size());
+        assertEquals("33012", new AddressMatcher(next.compact()).match("浙江省杭州市余杭区良渚街道").getCode());
+    }
+    
+    @Test
+    @DisplayName("测试增量变更删除的名称仍走编辑距离召回")
+    void testApplyDeltaEditDistance() {
+        // 更名后"五常街道"在基础段中只剩已删除的记录
+        AddressIndex updated = index.applyDelta(Collections.singletonList(
+                DivisionChange.update(new AdministrativeDivision("33012", "浙江省", "杭州市", "余杭区", "五棠街道"))));
+        
+        assertTrue(updated.searchExact("五常街道").isEmpty());
+        assertEquals(0, updated.searchExact("五常街道").count());
+        assertEquals(1, updated.searchExact("五常街道").length());
+        assertEquals(1, updated.searchExact("五棠街道").count());
+        assertEquals("33012", new AddressMatcher(updated).match("五常街道").getCode());
+    }
+    
+    @Test
+    @DisplayName("测试前缀匹配召回整个子树")
+    void testPrefixRecallNotTruncated() {
+        List<AdministrativeDivision> divisions = new ArrayList<>();
+        for (int i = 0; i < 1500; i++) {
+            divisions.add(new AdministrativeDivision(String.format("9900%04d", i), "测试省", "测试市", "测试区",
+                    String.format("示范街道%04d", i)));
+        }
+        AddressMatcher prefixMatcher = new AddressMatcher(AddressIndex.build(divisions));
+        
+        // 单字输入没有二元组，候选只来自前缀匹配
+        List<MatchResult> results = prefixMatcher.matchTopK("示", 2000);
+        assertEquals(1500, results.size());
+        assertTrue(results.stream().anyMatch(result -> "99001499".equals(result.getCode())));
+    }
 }
-
@@ -0,0 +1,93 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.MatchResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.buffer.MutableRoaringBitmap;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 行政区划层级树测试
+ *
+ * @author PetVetAI
+ */
+@DisplayName("行政区划层级树测试")
+class DivisionHierarchyTest {
+    
+    private static final List<AdministrativeDivision> DIVISIONS = List.of(
+            new AdministrativeDivision("33011", "浙江省", "杭州市", "余杭区", "仓前街道"),
+            new AdministrativeDivision("33012", "浙江省", "杭州市", "余杭区", "五常街道"),
+            new AdministrativeDivision("33021", "浙江省", "宁波市", "鼓楼区", "中山街道"),
+            new AdministrativeDivision("32001", "江苏省", "南京市", "鼓楼区", "中山街道"),
+            new AdministrativeDivision("35001", "福建省", "福州市", "鼓楼区", "东街街道"),
+            new AdministrativeDivision("35002", "江苏省", "福州市", "城东区", "城东街道"),
+            new AdministrativeDivision("81001", "香港特别行政区", null, "中西区", null));
+    
+    private static String[] levels(String province, String city) {
+        return new String[]{province, city, null, null};
+    }
+    
+    @Test
+    @DisplayName("测试树结构和缺失层级")
+    void testStructure() {
+        DivisionHierarchy hierarchy = DivisionHierarchy.build(DivisionTable.build(DIVISIONS));
+        
+        assertEquals(4, hierarchy.children(DivisionHierarchy.ROOT).length);
+        int[] zhejiang = hierarchy.provinces("浙江省");
+        assertEquals(1, zhejiang.length);
+        assertEquals(2, hierarchy.children(zhejiang[0]).length);
+        assertEquals(MutableRoaringBitmap.bitmapOf(0, 1, 2), hierarchy.subtree(zhejiang[0]).toMutableRoaringBitmap());
+        
+        int[] hangzhou = hierarchy.cities("杭州市");
+        assertEquals(1, hangzhou.length);
+        assertEquals(zhejiang[0], hierarchy.parent(hangzhou[0]));
+        assertEquals(LevelAutomaton.CITY, hierarchy.level(hangzhou[0]));
+        int yuhang = hierarchy.children(hangzhou[0])[0];
+        assertEquals("余杭区", hierarchy.name(yuhang));
+        assertEquals(MutableRoaringBitmap.bitmapOf(0, 1), hierarchy.subtree(yuhang).toMutableRoaringBitmap());
+        
+        // 缺少市级时区直接挂在省下
+        int hongKong = hierarchy.provinces("香港特别行政区")[0];
+        int central = hierarchy.children(hongKong)[0];
+        assertEquals("中西区", hierarchy.name(central));
+        assertEquals(LevelAutomaton.DISTRICT, hierarchy.level(central));
+        assertEquals(2, hierarchy.cities("福州市").length);
+    }
+    
+    @Test
+    @DisplayName("测试由输入层级确定匹配范围")
+    void testScope() {
+        DivisionHierarchy hierarchy = DivisionHierarchy.build(DivisionTable.build(DIVISIONS));
+        
+        assertEquals(MutableRoaringBitmap.bitmapOf(3, 5), hierarchy.scope(levels("江苏省", null)));
+        assertEquals(MutableRoaringBitmap.bitmapOf(5), hierarchy.scope(levels("江苏省", "福州市")));
+        // 缺少省份时取各省同名市
+        assertEquals(MutableRoaringBitmap.bitmapOf(4, 5), hierarchy.scope(levels(null, "福州市")));
+        // 市不在该省下但在其他省：省市矛盾，不约束
+        assertNull(hierarchy.scope(levels("江苏省", "杭州市")));
+        // 市名未知时只按省约束
+        assertEquals(MutableRoaringBitmap.bitmapOf(0, 1, 2), hierarchy.scope(levels("浙江省", "温州市")));
+        assertNull(hierarchy.scope(levels(null, null)));
+        assertNull(hierarchy.scope(levels("火星省", null)));
+    }
+    
+    @Test
+    @DisplayName("测试匹配只在已确定省份的子树内进行")
+    void testMatchWithinScope() {
+        AddressMatcher matcher = new AddressMatcher(AddressIndex.build(DIVISIONS));
+        
+        // 缺少市级时其他省的同名区街道不再胜出
+        MatchResult result = matcher.match("江苏省鼓楼区中山街道");
+        assertNotNull(result);
+        assertEquals("32001", result.getCode());
+        
+        // 省市矛盾时仍按市和区匹配
+        result = matcher.match("江苏省杭州市余杭区仓前街道");
+        assertNotNull(result);
+        assertEquals("33011", result.getCode());
+    }
+}
@@ -0,0 +1,74 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 堆外行政区划表测试
+ *
+ * @author PetVetAI
+ */
+@DisplayName("堆外行政区划表测试")
+class DivisionTableTest {
+    
+    @Test
+    @DisplayName("测试按序号解码和按编码查找")
+    void testDecodeAndLookup() {
+        List<AdministrativeDivision> divisions = new ArrayList<>(SyntheticDivisions.generate(3000));
+        divisions.add(new AdministrativeDivision("81001", "香港特别行政区", null, "中西区", null));
+        DivisionTable table = DivisionTable.build(divisions);
+        
+        assertEquals(divisions.size(), table.size());
+        for (int ordinal = 0; ordinal < divisions.size(); ordinal++) {
+            assertEquals(divisions.get(ordinal), table.get(ordinal));
+            assertEquals(ordinal, table.ordinalOf(divisions.get(ordinal).getCode()));
+        }
+        assertNull(table.field(divisions.size() - 1, 2));
+        assertEquals("中西区", table.field(divisions.size() - 1, 3));
+        assertEquals(-1, table.ordinalOf("99999"));
+        assertEquals(-1, table.ordinalOf(""));
+    }
+    
+    @Test
+    @DisplayName("测试解码出的对象相互独立")
+    void testDecodedCopiesAreIndependent() {
+        DivisionTable table = DivisionTable.build(List.of(
+                new AdministrativeDivision("33011", "浙江省", "杭州市", "余杭区", "仓前街道")));
+        
+        table.get(0).setStreet("五常街道");
+        assertEquals("仓前街道", table.get(0).getStreet());
+        assertNotSame(table.get(0), table.get(0));
+    }
+    
+    @Test
+    @DisplayName("测试同名层级共享名称编号和实例")
+    void testNamePool() {
+        DivisionTable table = DivisionTable.build(List.of(
+                new AdministrativeDivision("33011", "浙江省", "杭州市", "余杭区", "仓前街道"),
+                new AdministrativeDivision("33012", new String("浙江省"), new String("杭州市"), "余杭区", "五常街道"),
+                new AdministrativeDivision("81001", "香港特别行政区", null, "中西区", null)));
+        
+        assertEquals(7, table.nameCount());
+        assertEquals(table.nameId(0, 0), table.nameId(1, 0));
+        assertEquals(table.nameId(0, 1), table.nameId(1, 1));
+        assertNotEquals(table.nameId(0, 3), table.nameId(1, 3));
+        assertEquals(-1, table.nameId(2, 1));
+        assertSame(table.get(0).getProvince(), table.get(1).getProvince());
+        assertEquals("浙江省", table.name(table.nameId(1, 0)));
+    }
+    
+    @Test
+    @DisplayName("测试空表")
+    void testEmpty() {
+        DivisionTable table = DivisionTable.build(List.of());
+        
+        assertEquals(0, table.size());
+        assertEquals(-1, table.ordinalOf("33011"));
+    }
+}
@@ -0,0 +1,112 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.HouseholdAddress;
+import com.petvetai.app.domain.address.MatchResult;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 户级地址索引测试
+ *
+ * @author PetVetAI
+ */
+@DisplayName("户级地址索引测试")
+class HouseholdIndexTest {
+    
+    private static final List<AdministrativeDivision> DIVISIONS = List.of(
+            new AdministrativeDivision("33011", "浙江省", "杭州市", "余杭区", "仓前街道"),
+            new AdministrativeDivision("33012", "浙江省", "杭州市", "余杭区", "五常街道"),
+            new AdministrativeDivision("31001", "上海市", "上海市", "徐汇区", "湖南路街道"));
+    
+    private static final List<HouseholdAddress> HOUSEHOLDS = List.of(
+            HouseholdCsvReader.parseLine("H001,33011,文一西路,969号,3幢,2单元,501室"),
+            HouseholdCsvReader.parseLine("H002,33011,文一西路,969号,3幢,2单元,502室"),
+            HouseholdCsvReader.parseLine("H003,33011,文一西路,969号,3幢,1单元,501室"),
+            HouseholdCsvReader.parseLine("H004,33011,良睦路,1号,,,"),
+            HouseholdCsvReader.parseLine("H005,33012,文一西路,969号,3幢,2单元,501室"),
+            HouseholdCsvReader.parseLine("H006,31001,长乐路123弄,4号,,,201室"));
+    
+    private static String[] tokenize(String input, String street) {
+        return new HouseholdTokenizer().tokenize(input, street).clone();
+    }
+    
+    @Test
+    @DisplayName("测试切分道路、门牌号、楼栋、单元和室")
+    void testTokenize() {
+        assertArrayEquals(new String[]{"文一西路", "969", "3", "2", "501"},
+                tokenize("浙江省杭州市余杭区仓前街道文一西路969号3幢2单元501室", "仓前街道"));
+        // 没有标识的数字段依次归入下一级，分隔符结束数字段
+        assertArrayEquals(new String[]{"文一西路", "969", "3", "2", "501"},
+                tokenize("仓前街道 文一西路969号 3-2-501", "仓前街道"));
+        // 中文数字、全角数字、号楼和楼层
+        assertArrayEquals(new String[]{"文一西路", "969", "3", "2", "501"},
+                tokenize("仓前街道文一西路９６９号3号楼二单元5楼501室", "仓前街道"));
+        // 街道名称不在输入中时剥离道路前的区县、街道名称
+        assertArrayEquals(new String[]{"文一西路", "969", "A", null, null},
+                tokenize("余杭区仓钱街道文一西路969号a座", "仓前街道"));
+        // 里弄编号并入道路，道路名称中的"州"不剥离
+        assertArrayEquals(new String[]{"长乐路123弄", "4", null, null, "201"},
+                tokenize("长乐路123弄4号201室", null));
+        assertArrayEquals(new String[]{"杭州路", "8", null, null, null},
+                tokenize("西湖区杭州路8号", null));
+    }
+    
+    @Test
+    @DisplayName("测试数据集字段标准化")
+    void testNormalize() {
+        HouseholdTokenizer tokenizer = new HouseholdTokenizer();
+        
+        assertEquals("969", tokenizer.normalize(HouseholdTokenizer.NUMBER, "969号"));
+        assertEquals("3", tokenizer.normalize(HouseholdTokenizer.BUILDING, "3号楼"));
+        assertEquals("12", tokenizer.normalize(HouseholdTokenizer.UNIT, "十二单元"));
+        assertEquals("501", tokenizer.normalize(HouseholdTokenizer.ROOM, "５０１室"));
+        assertEquals("文一西路", tokenizer.normalize(HouseholdTokenizer.ROAD, " 文一西路 "));
+        assertNull(tokenizer.normalize(HouseholdTokenizer.ROOM, "室"));
+    }
+    
+    @Test
+    @DisplayName("测试只在街道内查找唯一对应的户")
+    void testLookup() {
+        HouseholdIndex index = HouseholdIndex.build(HOUSEHOLDS);
+        
+        assertEquals(6, index.size());
+        assertEquals(3, index.streetCount());
+        assertEquals("H001", index.lookup("33011", new String[]{"文一西路", "969", "3", "2", "501"}).getCode());
+        assertEquals("H005", index.lookup("33012", new String[]{"文一西路", "969", "3", "2", "501"}).getCode());
+        assertEquals("H004", index.lookup("33011", new String[]{"良睦路", "1", null, null, null}).getCode());
+        // 缺少室号时不对应任何一户，层级值在该街道不存在时直接返回
+        assertNull(index.lookup("33011", new String[]{"文一西路", "969", "3", "2", null}));
+        assertNull(index.lookup("33011", new String[]{"文一西路", "969", "3", "2", "601"}));
+        assertNull(index.lookup("33013", new String[]{"文一西路", "969", "3", "2", "501"}));
+        assertNull(index.lookup("33011", new String[HouseholdTokenizer.TOKEN_COUNT]));
+    }
+    
+    @Test
+    @DisplayName("测试匹配到街道后下降到户")
+    void testMatchAfterStreet() {
+        AddressMatcher matcher = new AddressMatcher(AddressIndex.build(DIVISIONS));
+        HouseholdIndex index = HouseholdIndex.build(HOUSEHOLDS);
+        
+        String input = "浙江省杭州市余杭区仓前街道文一西路969号3幢2单元502室";
+        MatchResult division = matcher.match(input);
+        assertEquals("33011", division.getCode());
+        HouseholdAddress household = index.match(division, input);
+        assertNotNull(household);
+        assertEquals("H002", household.getCode());
+        assertEquals("33011", household.getDivisionCode());
+        
+        input = "上海市徐汇区湖南路街道长乐路123弄4号201室";
+        assertEquals("H006", index.match(matcher.match(input), input).getCode());
+        
+        // 街道未确定时不下降
+        MatchResult streetless = new MatchResult("33011", new AdministrativeDivision("33011", "浙江省", "杭州市",
+                "余杭区", null), 60.0);
+        assertNull(index.match(streetless, input));
+        assertNull(index.match(new MatchResult(null, null, 0.0, true, "检测到多个省份"), input));
+    }
+}
@@ -0,0 +1,169 @@
+package com.petvetai.app.util.address;
+
+import com.petvetai.app.domain.address.AdministrativeDivision;
+import com.petvetai.app.domain.address.DivisionChange;
+import com.petvetai.app.domain.address.MatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 按省分区的地址索引测试
+ *
+ * @author PetVetAI
+ */
+@DisplayName("按省分区的地址索引测试")
+class PartitionedAddressIndexTest {
+    
+    private static final String[] ADDRESSES = {
+            "浙江省杭州市余杭区仓前街道",
+            "余杭区仓前街道",
+            "余杭仓前",
+            "北京北京市海淀区浙江省杭州市余杭区五常街道",
+            "上海市黄浦区外滩街道",
+            "北京市海淀区中关村街道"
+    };
+    
+    @TempDir
+    Path tempDir;
+    
+    private List<AdministrativeDivision> divisions;
+    
+    @BeforeEach
+    void setUp() throws IOException {
+        divisions = new ArrayList<>(SyntheticDivisions.generate(5000));
+        divisions.add(new AdministrativeDivision("33011", "浙江省", "杭州市", "余杭区", "仓前街道"));
+        divisions.add(new AdministrativeDivision("33012", "浙江省", "杭州市", "余杭区", "五常街道"));
+        divisions.add(new AdministrativeDivision("11001", "北京市", "北京市", "海淀区", "中关村街道"));
+        divisions.add(new AdministrativeDivision("31001", "上海市", "上海市", "黄浦区", "外滩街道"));
+        PartitionedAddressIndex.write(divisions, tempDir);
+    }
+    
+    @Test
+    @DisplayName("测试分区匹配结果与完整索引一致")
+    void testMatchesFullIndex() throws IOException {
+        AddressMatcher full = new AddressMatcher(AddressIndex.build(divisions));
+        PartitionedAddressIndex partitioned = PartitionedAddressIndex.open(tempDir, Long.MAX_VALUE, null);
+        
+        assertTrue(Files.isRegularFile(tempDir.resolve(PartitionedAddressIndex.ROUTER_FILE)));
+        assertEquals(0, partitioned.getResidentPartitionCount());
+        partitioned.match(ADDRESSES[0]);
+        assertEquals(1, partitioned.getResidentPartitionCount());
+        
+        for (int i = 0; i < divisions.size(); i += 97) {
+            String address = divisions.get(i).getFullAddress();
+            assertEquals(full.match(address), partitioned.match(address), address);
+        }
+        for (String address : ADDRESSES) {
+            MatchResult expected = full.match(address);
+            MatchResult actual = partitioned.match(address);
+            assertEquals(expected.getCode(), actual.getCode(), address);
+            assertEquals(expected.isAbnormal(), actual.isAbnormal(), address);
+        }
+    }
+    
+    @Test
+    @DisplayName("测试分区按需加载和最久未使用淘汰")
+    void testLazyLoadAndEviction() throws IOException {
+        // 上限小于两个分区，第二个分区加载时淘汰第一个
+        PartitionedAddressIndex partitioned = PartitionedAddressIndex.open(tempDir, 200, null);
+        
+        assertEquals("33011", partitioned.match("浙江省杭州市余杭区仓前街道").getCode());
+        assertEquals(1, partitioned.getResidentPartitionCount());
+        assertEquals(1, partitioned.getLoadCount());
+        
+        assertEquals("11001", partitioned.match("北京市海淀区中关村街道").getCode());
+        assertEquals(1, partitioned.getResidentPartitionCount());
+        assertEquals(1, partitioned.getEvictionCount());
+        
+        assertEquals("33011", partitioned.match("浙江省杭州市余杭区仓前街道").getCode());
+        assertEquals(3, partitioned.getLoadCount());
+        assertTrue(partitioned.getResidentDivisionCount() <= 200);
+    }
+    
+    @Test
+    @DisplayName("测试路由表没有命中时只在已常驻的分区中匹配")
+    void testUnroutedInputLoadsNothing() throws IOException {
+        PartitionedAddressIndex partitioned = PartitionedAddressIndex.open(tempDir, Long.MAX_VALUE, null);
+        
+        MatchResult miss = partitioned.match("qwerty");
+        assertNull(miss.getCode());
+        assertEquals(0, partitioned.getLoadCount());
+        assertEquals(0, partitioned.getResidentPartitionCount());
+        
+        assertEquals("33011", partitioned.match("浙江省杭州市余杭区仓前街道").getCode());
+        partitioned.match("qwerty");
+        partitioned.match("yuhangcangqian");
+        assertEquals(1, partitioned.getLoadCount());
+        assertEquals(1, partitioned.getResidentPartitionCount());
+    }
+    
+    @Test
+    @DisplayName("测试加载和更新其他分区不清空已缓存的结果")
+    void testCacheSurvivesOtherPartitions() throws IOException {
+        MatchResultCache cache = new MatchResultCache(100, 1024 * 1024);
+        PartitionedAddressIndex partitioned = PartitionedAddressIndex.open(tempDir, Long.MAX_VALUE, cache);
+        
+        assertEquals("33011", partitioned.match("浙江省杭州市余杭区仓前街道").getCode());
+        assertEquals(0, cache.hitCount());
+        
+        // 加载北京分区、更新北京分区，都会产生新的索引代数
+        assertEquals("11001", partitioned.match("北京市海淀区中关村街道").getCode());
+        partitioned.applyDelta(Collections.singletonList(
+                DivisionChange.add(new AdministrativeDivision("11002", "北京市", "北京市", "海淀区", "学院路街道"))));
+        assertEquals(2, partitioned.getResidentPartitionCount());
+        
+        assertEquals("33011", partitioned.match("浙江省杭州市余杭区仓前街道").getCode());
+        assertEquals(1, cache.hitCount());
+        // 北京分区更新后旧代数的条目不再命中
+        assertEquals("11001", partitioned.match("北京市海淀区中关村街道").getCode());
+        assertEquals(1, cache.hitCount());
+        assertEquals("11001", partitioned.match("北京市海淀区中关村街道").getCode());
+        assertEquals(2, cache.hitCount());
+    }
+    
+    @Test
+    @DisplayName("测试分区增量变更在淘汰后重新加载时仍然有效")
+    void testApplyDelta() throws IOException {
+        PartitionedAddressIndex partitioned = PartitionedAddressIndex.open(tempDir, 200, null);
+        partitioned.applyDelta(List.of(
+                DivisionChange.add(new AdministrativeDivision("33019", "浙江省", "杭州市", "临平区", "东湖街道")),
+                DivisionChange.add(new AdministrativeDivision("99001", "测试省", "测试市", "新建区", "新建街道"))));
+        
+        assertEquals("33019", partitioned.match("浙江省杭州市临平区东湖街道").getCode());
+        assertEquals("99001", partitioned.match("测试省测试市新建区新建街道").getCode());
+        
+        // 加载北京分区时淘汰其余分区，浙江分区重新加载后重放全部增量变更
+        assertEquals("11001", partitioned.match("北京市海淀区中关村街道").getCode());
+        partitioned.applyDelta(Collections.singletonList(DivisionChange.remove("33011")));
+        assertEquals("33019", partitioned.match("杭州市临平区东湖街道").getCode());
+        assertNotEquals("33011", partitioned.match("浙江省杭州市余杭区仓前街道").getCode());
+        assertTrue(partitioned.getEvictionCount() > 0);
+    }
+    
+    @Test
+    @DisplayName("测试分区索引代数只在增量变更时变化")
+    void testGeneration() throws IOException {
+        PartitionedAddressIndex partitioned = PartitionedAddressIndex.open(tempDir, 200, null);
+        long opened = partitioned.getGeneration();
+        
+        // 按需加载和淘汰不改变代数
+        partitioned.match("浙江省杭州市余杭区仓前街道");
+        partitioned.match("北京市海淀区中关村街道");
+        assertEquals(opened, partitioned.getGeneration());
+        
+        partitioned.applyDelta(Collections.singletonList(DivisionChange.remove("33011")));
+        assertTrue(partitioned.getGeneration() > opened);
+        assertTrue(PartitionedAddressIndex.open(tempDir, 200, null).getGeneration() > partitioned.getGeneration());
+    }
+}